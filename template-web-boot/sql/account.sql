@@ -56,7 +56,8 @@ CREATE TABLE user (
     updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
 
     PRIMARY KEY (user_id) COMMENT '用户的 ID 作为主键',
-    UNIQUE  KEY index_org_user (org_id, username) COMMENT '同一个机构用户名不能重复'
+    UNIQUE  KEY index_org_user (org_id, username) COMMENT '同一个机构用户名不能重复',
+    KEY index_org_user_id (org_id, user_id) COMMENT '游标分页查询机构的用户'
 ) ENGINE=InnoDB;
 
 #--------------------------------------------------------------------------------------
@@ -0,0 +1,21 @@
+#-------------------------------------------
+# 表名：worker_lease
+# 作者：黄彪
+# 日期：2026-10-18
+# 版本：1.0
+# 描述：CachedUidGenerator 的机器 ID 租约表，节点启动时申请一个空闲的机器 ID [0, 1023]，运行时心跳续约，关闭时释放
+#      fence 每次被申请时加 1，续约和释放都需要带上申请时得到的 fence，fence 不匹配说明租约已经被其他节点回收
+#------------------------------------------
+DROP TABLE IF EXISTS worker_lease;
+
+CREATE TABLE worker_lease (
+    worker_id  int(11)      NOT NULL COMMENT '机器 ID，范围是 [0, 1023]',
+    owner      varchar(128) NOT NULL COMMENT '持有租约的节点，格式为 pid@host',
+    fence      bigint(20)   NOT NULL COMMENT '租约的版本，每次被申请时加 1',
+    expired_at bigint(20)   NOT NULL COMMENT '租约的过期时间，单位毫秒',
+
+    created_at datetime  NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+
+    PRIMARY KEY (worker_id) COMMENT '机器 ID 作为主键'
+) ENGINE=InnoDB;
@@ -10,7 +10,17 @@ public interface CacheConst {
 
     // 用户机构
     String KEY_USER_ID  = "'user.' + #userId";
+    String PREFIX_USER  = "user."; // 和 KEY_USER_ID 相同，在代码中直接访问缓存时使用: PREFIX_USER + userId
     String KEY_ORG_HOST = "'org.' + #host";
+    String PREFIX_ORG   = "org.";  // 和 KEY_ORG_HOST 相同，在代码中直接访问缓存时使用: PREFIX_ORG + host
+
+    // CACHE 的提前刷新 (@Cached 方法和同名的 @CreateCache 字段都要配置): 被访问过的 key 在写入 55 分钟后 (jetcache.*.default.expireAfterWriteInMillis 为 60 分钟) 在后台重新加载，
+    // 刷新期间仍然返回旧值，热点 key 不会同时过期；超过 60 分钟没有被访问的 key 停止刷新，等待过期
+    int REFRESH_SECONDS = 3300;
+    int STOP_REFRESH_AFTER_LAST_ACCESS_SECONDS = 3600;
+
+    // 找不到机构的域名 (负缓存)，只缓存在本地
+    String CACHE_UNKNOWN_HOST = "xtuer:unknown-host:";
 
     // 考试
     String KEY_EXAM     = "'exam.' + #exam.examId";
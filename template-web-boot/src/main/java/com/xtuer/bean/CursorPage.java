@@ -0,0 +1,42 @@
+package com.xtuer.bean;
+
+import com.xtuer.util.PageUtils;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * 游标分页的结果: 这一页的数据和下一页的游标，客户端把 nextCursor 原样作为参数 cursor 请求下一页，nextCursor 为 null 时没有下一页
+ *
+ * @param <T> 数据的类型
+ */
+@Getter
+public class CursorPage<T> {
+    private final List<T> items;      // 这一页的数据
+    private final String  nextCursor; // 下一页的游标，没有下一页时为 null
+
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items      = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * 创建游标分页的结果，数据的数量等于 pageSize 时使用最后一条数据的 ID 生成下一页的游标，少于 pageSize 时没有下一页
+     *
+     * @param items 这一页的数据，按 ID 升序排列
+     * @param page  分页对象
+     * @param idOf  获取数据的 ID
+     * @param <T>   数据的类型
+     * @return 返回游标分页的结果
+     */
+    public static <T> CursorPage<T> of(List<T> items, Page page, ToLongFunction<T> idOf) {
+        String nextCursor = null;
+
+        if (!items.isEmpty() && items.size() >= page.getSize()) {
+            nextCursor = PageUtils.cursor(idOf.applyAsLong(items.get(items.size() - 1)));
+        }
+
+        return new CursorPage<>(items, nextCursor);
+    }
+}
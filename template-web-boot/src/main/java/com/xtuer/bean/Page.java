@@ -3,18 +3,28 @@ package com.xtuer.bean;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import com.xtuer.exception.ApplicationException;
 import com.xtuer.util.PageUtils;
 
 /**
- * 分页使用的类
+ * <pre>
+ * 分页使用的类，支持 2 种分页方式:
+ *     1. 偏移分页: 使用 pageNumber 和 pageSize 计算 offset，Mapper 中使用 LIMIT ${page.offset}, ${page.size}，
+ *        页码越大需要扫描并丢弃的记录越多
+ *     2. 游标分页: 使用 afterId (上一页最后一条记录的 ID)，Mapper 中使用 WHERE id > #{page.afterId} ORDER BY id LIMIT #{page.size}，
+ *        每一页的代价都相同，使用 Page.after(cursor, pageSize) 创建，游标由 PageUtils.cursor(lastId) 生成
+ * </pre>
  */
 @Getter
 @Setter
 @Accessors(chain = true)
 public class Page {
-    private int pageNumber = 1 ; // 页码
-    private int pageSize   = 10; // 每页数量
-    private int offset     = 0 ; // 起始位置
+    public static final int MAX_CURSOR_PAGE_SIZE = 100; // 游标分页每页的最大数量，保证每一页的代价不变
+
+    private int  pageNumber = 1 ; // 页码
+    private int  pageSize   = 10; // 每页数量
+    private int  offset     = 0 ; // 起始位置
+    private long afterId    = 0 ; // 游标分页: 上一页最后一条记录的 ID，为 0 时查询第一页
 
     public int getOffset() {
         return PageUtils.offset(pageNumber, pageSize);
@@ -62,4 +72,24 @@ public class Page {
 
         return page;
     }
+
+    /**
+     * 使用游标和 pageSize 创建游标分页的分页对象，pageSize 最大为 MAX_CURSOR_PAGE_SIZE
+     *
+     * @param cursor   上一页返回的游标，为空时查询第一页
+     * @param pageSize 数量
+     * @return 返回分页对象
+     * @throws ApplicationException 游标无效时抛出异常，code 为 400
+     */
+    public static Page after(String cursor, int pageSize) {
+        long afterId;
+
+        try {
+            afterId = PageUtils.afterId(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new ApplicationException(ex.getMessage(), 400);
+        }
+
+        return new Page().setAfterId(afterId).setPageSize(Math.min(pageSize, MAX_CURSOR_PAGE_SIZE));
+    }
 }
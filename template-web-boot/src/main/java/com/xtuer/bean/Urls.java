@@ -64,5 +64,7 @@ public interface Urls {
     String API_ORGS        = "/api/orgs";                 // 所有机构
     String API_ORGS_BY_ID  = "/api/orgs/{orgId}";         // 指定 ID 的机构
     String API_ORGS_ENABLE = "/api/orgs/{orgId}/enabled"; // 指定 ID 的机构的启用禁用状态
+    String API_ORGS_USERS  = "/api/orgs/{orgId}/users";   // 指定 ID 的机构的用户
+    String API_ORGS_USERS_EXPORT = "/api/orgs/{orgId}/users/export"; // 导出指定 ID 的机构的所有用户
 
 }
@@ -0,0 +1,61 @@
+package com.xtuer.bean;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量导入用户的结果 (导入过程中也作为进度使用): 处理的行数、创建和更新的用户数、失败的行和原因
+ */
+@Getter
+@ToString
+public class UserImportResult {
+    private int processed; // 已处理的行数
+    private int created;   // 创建的用户数
+    private int updated;   // 更新的用户数
+    private final List<RowError> errors = new ArrayList<>(); // 失败的行
+
+    public void addProcessed(int count) {
+        processed += count;
+    }
+
+    public void addCreated() {
+        created++;
+    }
+
+    public void addUpdated() {
+        updated++;
+    }
+
+    public void addError(int row, String username, String message) {
+        errors.add(new RowError(row, username, message));
+    }
+
+    /**
+     * 获取失败的行数
+     *
+     * @return 返回失败的行数
+     */
+    public int getFailed() {
+        return errors.size();
+    }
+
+    /**
+     * 导入失败的行
+     */
+    @Getter
+    @ToString
+    public static class RowError {
+        private final int    row;      // 行号，从 1 开始
+        private final String username; // 账号
+        private final String message;  // 失败的原因
+
+        public RowError(int row, String username, String message) {
+            this.row      = row;
+            this.username = username;
+            this.message  = message;
+        }
+    }
+}
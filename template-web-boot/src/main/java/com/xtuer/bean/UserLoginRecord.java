@@ -0,0 +1,31 @@
+package com.xtuer.bean;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+import java.util.Date;
+
+/**
+ * 用户的登录记录
+ */
+@Getter
+@Setter
+@ToString
+@Accessors(chain = true)
+public class UserLoginRecord {
+    private long   userId;    // 用户 ID
+    private String username;  // 账号
+    private Date   createdAt; // 登录时间 (延迟批量写入数据库，所以登录时记录下时间)
+
+    public UserLoginRecord() {
+
+    }
+
+    public UserLoginRecord(long userId, String username) {
+        this.userId    = userId;
+        this.username  = username;
+        this.createdAt = new Date();
+    }
+}
@@ -0,0 +1,20 @@
+package com.xtuer.bean;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * IdWorker 的机器 ID 租约
+ */
+@Getter
+@Setter
+@ToString
+@Accessors(chain = true)
+public class WorkerLease {
+    private int    workerId;  // 机器 ID，范围是 [0, 1023]
+    private String owner;     // 持有租约的节点
+    private long   fence;     // 租约的版本，每次被申请时加 1
+    private long   expiredAt; // 租约的过期时间，单位毫秒
+}
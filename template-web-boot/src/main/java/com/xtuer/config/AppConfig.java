@@ -1,5 +1,7 @@
 package com.xtuer.config;
 
+import com.xtuer.util.Jwt;
+import com.xtuer.util.ResponseUtils;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Value;
@@ -33,4 +35,116 @@ public class AppConfig {
 
     @Value("${app.key}")
     private String appKey;
+
+    // 身份认证 token 的签名算法: MD5 或者 HS256
+    @Value("${app.authTokenAlgorithm:HS256}")
+    private Jwt.Algorithm authTokenAlgorithm;
+
+    // 校验通过的 token 的缓存数量
+    @Value("${app.authTokenCacheSize:10000}")
+    private int authTokenCacheSize;
+
+    // 从共享存储同步撤销的 token 的间隔，单位毫秒
+    @Value("${app.tokenRevocationRefreshInterval:10000}")
+    private long tokenRevocationRefreshInterval;
+
+    // 是否接受 MD5 签名的 token，迁移到 HS256 期间为 true，旧的 token 都过期后设置为 false
+    @Value("${app.authTokenAcceptMd5:true}")
+    private boolean authTokenAcceptMd5;
+
+    // 是否从表 worker_lease 申请 CachedUidGenerator 的机器 ID，为 false 时使用 uid-generator 默认的 WorkerIdAssigner
+    @Value("${app.workerLease.enabled:false}")
+    private boolean workerLeaseEnabled;
+
+    // 机器 ID 租约的有效期，单位毫秒
+    @Value("${app.workerLease.duration:60000}")
+    private long workerLeaseDuration;
+
+    // 登录记录的队列长度
+    @Value("${app.loginRecord.queueSize:10000}")
+    private int loginRecordQueueSize;
+
+    // 登录记录每批写入数据库的最大数量
+    @Value("${app.loginRecord.batchSize:500}")
+    private int loginRecordBatchSize;
+
+    // 登录记录写入数据库的间隔，单位毫秒
+    @Value("${app.loginRecord.flushInterval:200}")
+    private long loginRecordFlushInterval;
+
+    // 登录记录的队列满时的最大等待时间，为 0 时直接丢弃，单位毫秒
+    @Value("${app.loginRecord.offerTimeout:0}")
+    private long loginRecordOfferTimeout;
+
+    // BCrypt 加密密码的 cost (log rounds)，修改后用户登录时自动使用新的 cost 重新加密密码
+    @Value("${app.password.cost:10}")
+    private int passwordCost;
+
+    // BCrypt 计算的线程数
+    @Value("${app.password.threads:4}")
+    private int passwordThreads;
+
+    // BCrypt 计算的等待队列长度，队列满时返回服务器繁忙
+    @Value("${app.password.queueSize:64}")
+    private int passwordQueueSize;
+
+    // 请求线程等待 BCrypt 计算的最大时间，超时返回服务器繁忙，单位毫秒
+    @Value("${app.password.waitTimeout:3000}")
+    private long passwordWaitTimeout;
+
+    // 批量导入用户时每批的数量
+    @Value("${app.userImport.batchSize:500}")
+    private int userImportBatchSize;
+
+    // 批量导入用户时并行加密密码的线程数
+    @Value("${app.userImport.hashThreads:2}")
+    private int userImportHashThreads;
+
+    // 导出用户时每段读取的数量，读完一段后归还数据库连接再写给客户端
+    @Value("${app.userExport.chunkSize:5000}")
+    private int userExportChunkSize;
+
+    // 检查机构表是否变化的间隔，变化时重新加载域名到机构的路由表，单位毫秒
+    @Value("${app.orgRouting.pollInterval:5000}")
+    private long orgRoutingPollInterval;
+
+    // 浏览器缓存仓库文件的时间，仓库文件移动到仓库后不会再修改，单位秒
+    @Value("${app.file.repoMaxAge:31536000}")
+    private long repoFileMaxAge;
+
+    // 浏览器缓存临时文件的时间，单位秒
+    @Value("${app.file.tempMaxAge:300}")
+    private long tempFileMaxAge;
+
+    // 不能使用 sendfile 时是否使用非阻塞 IO 异步发送文件，慢速的客户端不占用请求线程
+    @Value("${app.file.async.enabled:true}")
+    private boolean fileAsyncEnabled;
+
+    // 异步发送文件时读取文件的线程数
+    @Value("${app.file.async.threads:2}")
+    private int fileAsyncThreads;
+
+    // 异步发送文件的空闲超时时间: 超过这个时间没有写出任何数据时结束下载 (不限制下载的总时长)，单位毫秒
+    @Value("${app.file.async.timeout:60000}")
+    private long fileAsyncTimeout;
+
+    // 是否压缩文本文件 (txt, js, css, json, xml, html 等)
+    @Value("${app.file.compress.enabled:true}")
+    private boolean fileCompressEnabled;
+
+    // 小于此大小的文本文件不压缩，单位字节
+    @Value("${app.file.compress.minSize:1024}")
+    private long fileCompressMinSize;
+
+    // 大于此大小的文本文件不在请求中生成 gzip 文件 (部署时预先压缩好的 .gz 和 .br 仍然使用)，单位字节
+    @Value("${app.file.compress.maxSize:10485760}")
+    private long fileCompressMaxSize;
+
+    // 仓库文件交给前端的代理服务器发送: NONE (Java 发送), NGINX (X-Accel-Redirect), APACHE (X-Sendfile)
+    @Value("${app.file.offload.mode:NONE}")
+    private ResponseUtils.Offload fileOffload;
+
+    // nginx 访问仓库文件的 internal location，对应文件仓库的目录 ${app.dir.repo}
+    @Value("${app.file.offload.prefix:/internal/repo/}")
+    private String fileOffloadPrefix;
 }
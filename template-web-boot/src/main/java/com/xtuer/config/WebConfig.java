@@ -1,11 +1,17 @@
 package com.xtuer.config;
 
+import com.alicp.jetcache.autoconfigure.JedisPoolFactory;
+import com.alicp.jetcache.autoconfigure.RedisAutoConfiguration;
 import com.xtuer.converter.DateConverter;
 import com.xtuer.converter.JacksonHttpMessageConverter;
+import com.xtuer.util.SnowflakeIdCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.web.filter.HiddenHttpMethodFilter;
+import redis.clients.jedis.JedisPool;
 
 @Configuration
 public class WebConfig {
@@ -37,4 +43,30 @@ public class WebConfig {
     public HiddenHttpMethodFilter hiddenHttpMethodFilter() {
         return new HiddenHttpMethodFilter();
     }
+
+    /**
+     * 创建 CachedUidGenerator 生成的 ID 的编解码器，按创建时间查询时把时间范围转换为主键的范围，
+     * 参数和 uid-generator 的配置相同 (没有配置时使用 uid-generator 的默认值)
+     *
+     * @return 返回 ID 的编解码器
+     */
+    @Bean
+    public SnowflakeIdCodec idCodec(@Value("${uid.epochStr:2019-02-20}") String epochStr,
+                                    @Value("${uid.timeBits:30}") int timeBits,
+                                    @Value("${uid.workerBits:16}") int workerBits,
+                                    @Value("${uid.seqBits:7}") int seqBits) {
+        return SnowflakeIdCodec.uidGenerator(epochStr, timeBits, workerBits, seqBits);
+    }
+
+    /**
+     * JetCache 根据 jetcache.remote.default 的配置 (host, port, password, database, timeout, poolConfig) 创建的 Redis 连接池，
+     * 撤销 token 等直接访问 Redis 的地方都使用这个连接池，不再单独创建连接池 (连接池由 JetCache 管理，使用者不要关闭)
+     *
+     * @return 返回创建 JedisPool 的 FactoryBean
+     */
+    @Bean
+    @DependsOn(RedisAutoConfiguration.AUTO_INIT_BEAN_NAME)
+    public JedisPoolFactory jedisPool() {
+        return new JedisPoolFactory("remote.default", JedisPool.class);
+    }
 }
@@ -2,10 +2,16 @@ package com.xtuer.config;
 
 import com.xtuer.bean.Urls;
 import com.xtuer.security.JwtAuthenticationFilter;
+import com.xtuer.security.LoginPasswordEncoder;
+import com.xtuer.security.UserDetailsService;
+import com.xtuer.security.WebLoginFailureHandler;
 import com.xtuer.security.WebLoginSuccessHandler;
 import com.xtuer.security.WebLogoutSuccessHandler;
+import com.xtuer.service.PasswordService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
@@ -20,9 +26,27 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private WebLoginSuccessHandler webLoginSuccessHandler;
 
+    @Autowired
+    private WebLoginFailureHandler webLoginFailureHandler;
+
     @Autowired
     private WebLogoutSuccessHandler webLogoutSuccessHandler;
 
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    // 表单登录使用 PasswordService 的线程池计算 BCrypt，繁忙时抛出 AuthenticationException 由 webLoginFailureHandler 处理
+    @Override
+    protected void configure(AuthenticationManagerBuilder auth) {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(new LoginPasswordEncoder(passwordService));
+        auth.authenticationProvider(provider);
+    }
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         // 权限控制
@@ -48,6 +72,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         http.formLogin()
                 .loginPage(Urls.PAGE_LOGIN)
                 .successHandler(webLoginSuccessHandler)
+                .failureHandler(webLoginFailureHandler)
                 .permitAll();
 
         // 注销的 URL: /logout，GET 或者 POST 请求
@@ -5,6 +5,7 @@ import com.xtuer.bean.Result;
 import com.xtuer.bean.Urls;
 import com.xtuer.bean.User;
 import com.xtuer.config.AppConfig;
+import com.xtuer.exception.ApplicationException;
 import com.xtuer.security.JwtService;
 import com.xtuer.service.UserService;
 import com.xtuer.util.WebUtils;
@@ -120,7 +121,14 @@ public class AuthenticationController extends BaseController {
     @PostMapping(Urls.API_LOGIN_TOKENS)
     @ResponseBody
     public Result<String> loginToken(@RequestParam String username, @RequestParam String password, @RequestParam long orgId, HttpServletResponse response) {
-        User user = userService.findUser(username, password, orgId);
+        User user;
+
+        try {
+            user = userService.findUser(username, password, orgId);
+        } catch (ApplicationException ex) {
+            // 校验密码的线程池繁忙时立即返回，客户端稍后重试
+            return Result.fail(ex.getMessage(), ex.getCode());
+        }
 
         if (user == null) {
             return Result.fail("用户名或密码不正确");
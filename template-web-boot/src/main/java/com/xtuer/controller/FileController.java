@@ -3,7 +3,13 @@ package com.xtuer.controller;
 import com.xtuer.bean.Result;
 import com.xtuer.bean.UploadedFile;
 import com.xtuer.bean.Urls;
+import com.xtuer.config.AppConfig;
+import com.xtuer.service.AsyncFileSender;
+import com.xtuer.service.CompressedFileService;
+import com.xtuer.util.ResponseUtils;
 import com.xtuer.util.WebUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -12,7 +18,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
@@ -27,9 +34,22 @@ import java.util.List;
  *
  *     访问临时文件和仓库中的文件，直接读取文件返回，不需要查询文件的原始名字，这样也可以支持从 nginx 访问
  *     下载文件时，先查询文件原来的名字，然后才读取文件返回，使用文件原来的名字保存比使用一个无意义的名字更友好
+ *
+ *     仓库文件的名字为 ID，移动到仓库后不会修改，浏览器可以长期缓存 (immutable)；临时文件只缓存很短的时间
+ *
+ *     配置 app.file.offload.mode 后，仓库文件由前端的 nginx (X-Accel-Redirect) 或者 Apache (X-Sendfile) 发送，
+ *     Java 只负责权限检查、查询文件名和设置响应头，不占用线程发送文件内容
  */
 @Controller
 public class FileController extends BaseController {
+    @Autowired
+    private AppConfig config;
+
+    @Autowired
+    private AsyncFileSender asyncFileSender;
+
+    @Autowired
+    private CompressedFileService compressedFileService;
     /**
      * 访问文件仓库中的文件
      *
@@ -44,7 +64,7 @@ public class FileController extends BaseController {
         String uri = WebUtils.getUri(request);
         File file  = repoFileService.getRepoFileByUrl(uri);
 
-        WebUtils.readFileToResponse(file, response);
+        readRepoFileToResponse(file, file.getName(), request, response);
     }
 
     /**
@@ -78,7 +98,7 @@ public class FileController extends BaseController {
         }
 
         // [4] 向 response 写入文件
-        WebUtils.readFileToResponse(repoFile.getAbsolutePath(), originalName, request, response);
+        readRepoFileToResponse(repoFile, originalName, request, response);
     }
 
     /**
@@ -94,7 +114,7 @@ public class FileController extends BaseController {
         String filename = WebUtils.getUriFilename(request);
         File file = tempFileService.getTempFile(filename);
 
-        WebUtils.readFileToResponse(file, response);
+        WebUtils.readFileToResponse(file, "private, max-age=" + config.getTempFileMaxAge(), response);
     }
 
     /**
@@ -145,12 +165,50 @@ public class FileController extends BaseController {
     @ResponseBody
     public Result<List<UploadedFile>> uploadFilesToTemp(@RequestParam("files") List<MultipartFile> files) throws IOException {
         long userId = super.getCurrentUserId();
-        List<UploadedFile> upFiles = new LinkedList<>();
+        List<UploadedFile> upFiles = tempFileService.uploadFilesToTemp(files, userId);
 
-        for (MultipartFile file : files) {
-            upFiles.add(tempFileService.uploadFileToTemp(file, userId));
+        return Result.ok(upFiles);
+    }
+
+    /**
+     * 读取仓库文件到 response: 浏览器长期缓存，文本文件优先发送压缩后的文件，不能使用 sendfile 时异步发送。
+     * 配置了 offload 时只返回响应头，由前端的代理服务器发送文件 (压缩由 nginx 的 gzip_static 处理)
+     */
+    private void readRepoFileToResponse(File file, String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ResponseUtils.Options options = new ResponseUtils.Options()
+                .setFilename(filename != null ? filename : file.getName()) // 压缩后的文件名不能用来判断 Content-Type
+                .setCacheControl(repoCacheControl())
+                .setSender(asyncFileSender);
+        ResponseUtils.Offload offload = config.getFileOffload();
+
+        if (offload != null && offload != ResponseUtils.Offload.NONE) {
+            ResponseUtils.offloadFileToResponse(file.getAbsolutePath(), offloadLocation(file, offload), offload, options, request, response);
+            return;
         }
 
-        return Result.ok(upFiles);
+        File target = compressedFileService.select(file, options, request);
+
+        ResponseUtils.readFileToResponse(target.getAbsolutePath(), options, request, response);
+    }
+
+    /**
+     * 代理服务器访问仓库文件的位置: nginx 为 internal location 加上文件的仓库路径，Apache 为文件的绝对路径
+     */
+    private String offloadLocation(File file, ResponseUtils.Offload offload) {
+        if (offload == ResponseUtils.Offload.APACHE) {
+            return file.getAbsolutePath();
+        }
+
+        Path   repoDir  = Paths.get(config.getRepoDirectory()).toAbsolutePath().normalize();
+        String repoPath = repoDir.relativize(file.toPath().toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+
+        return StringUtils.appendIfMissing(config.getFileOffloadPrefix(), "/") + repoPath;
+    }
+
+    /**
+     * 仓库文件的 Cache-Control
+     */
+    private String repoCacheControl() {
+        return "public, max-age=" + config.getRepoFileMaxAge() + ", immutable";
     }
 }
@@ -1,10 +1,10 @@
 package com.xtuer.controller;
 
+import com.xtuer.bean.CursorPage;
 import com.xtuer.bean.Organization;
 import com.xtuer.bean.Page;
 import com.xtuer.bean.Result;
 import com.xtuer.bean.Urls;
-import com.xtuer.mapper.OrganizationMapper;
 import com.xtuer.service.OrganizationService;
 import com.xtuer.util.Utils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,9 +22,6 @@ public class OrganizationController extends BaseController {
     @Autowired
     private OrganizationService orgService;
 
-    @Autowired
-    private OrganizationMapper orgMapper;
-
     /**
      * 使用机构 ID 查询机构，同时会查询出机构的管理员
      *
@@ -57,7 +54,29 @@ public class OrganizationController extends BaseController {
     public Result<List<Organization>> findOrganizations(@RequestParam(required = false) String name,
                                                         @RequestParam(required = false, defaultValue = "1") int pageNumber,
                                                         @RequestParam(required = false, defaultValue = "20") int pageSize) {
-        return Result.ok(orgMapper.findOrganizationsLikeName(name, Page.of(pageNumber, pageSize)));
+        return Result.ok(orgService.findOrganizations(name, Page.of(pageNumber, pageSize)));
+    }
+
+    /**
+     * 使用机构名称模糊查询查询机构，游标分页，每一页的代价都相同
+     *
+     * 网址: http://localhost:8080/api/orgs?name=测试机构&cursor=
+     * 参数:
+     *      name     [可选]: 机构名，可模糊查询，没有时查询所有机构
+     *      cursor   [必要]: 上一页返回的 nextCursor，为空时查询第一页
+     *      pageSize [可选]: 数量，最大为 Page.MAX_CURSOR_PAGE_SIZE
+     *
+     * @param name     机构名 (部分)
+     * @param cursor   游标
+     * @param pageSize 数量
+     * @return payload 为这一页的机构和下一页的游标 nextCursor，没有下一页时 nextCursor 为 null
+     * @throws com.xtuer.exception.ApplicationException 游标无效时抛出异常，code 为 400
+     */
+    @GetMapping(value = Urls.API_ORGS, params = "cursor")
+    public Result<CursorPage<Organization>> findOrganizationsByCursor(@RequestParam(required = false) String name,
+                                                                      @RequestParam String cursor,
+                                                                      @RequestParam(required = false, defaultValue = "20") int pageSize) {
+        return Result.ok(orgService.findOrganizationsAfter(name, Page.after(cursor, pageSize)));
     }
 
     /**
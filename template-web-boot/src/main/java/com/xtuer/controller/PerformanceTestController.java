@@ -3,11 +3,15 @@ package com.xtuer.controller;
 import com.xtuer.bean.Result;
 import com.xtuer.bean.User;
 import com.xtuer.service.PerformanceTestService;
+import com.xtuer.util.RequestContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 压力测试的控制器
  */
@@ -51,4 +55,17 @@ public class PerformanceTestController {
     public String redisWrite() {
         return performanceTestService.redisWrite();
     }
+
+    /**
+     * 请求范围内缓存的统计: 实际计算的次数和省去的计算次数 (当前域名、当前机构)
+     */
+    @GetMapping("/api/pt/request-context")
+    @ResponseBody
+    public Result<Map<String, Long>> requestContext() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("resolved", RequestContext.getResolvedCount());
+        stats.put("avoided", RequestContext.getAvoidedCount());
+
+        return Result.ok(stats);
+    }
 }
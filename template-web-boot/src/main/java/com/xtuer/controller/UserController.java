@@ -1,23 +1,36 @@
 package com.xtuer.controller;
 
+import com.xtuer.bean.CursorPage;
+import com.xtuer.bean.Page;
 import com.xtuer.bean.Result;
+import com.xtuer.bean.Role;
 import com.xtuer.bean.Urls;
 import com.xtuer.bean.User;
+import com.xtuer.exception.ApplicationException;
+import com.xtuer.service.UserExportService;
 import com.xtuer.service.UserService;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
 /**
  * 操作用户信息的控制器
  *
  * 注意: 由于会涉及到缓存，此类中不要直接使用 UserMapper 访问用户数据，而应该使用 UserService
+ *
+ * 机构用户的列表和导出包含手机、邮箱等信息，只有系统管理员和这个机构的管理员可以访问
  */
 @RestController
 public class UserController extends BaseController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserExportService userExportService;
+
     /**
      * 使用用户 ID 查询用户信息
      *
@@ -32,6 +45,51 @@ public class UserController extends BaseController {
         return Result.single(user, "ID 为 " + userId + "的用户不存在");
     }
 
+    /**
+     * 查询机构的用户，使用游标分页，用户很多的机构翻到后面的页也不会变慢
+     *
+     * 网址: http://localhost:8080/api/orgs/{orgId}/users?cursor=
+     * 参数:
+     *      cursor   [可选]: 上一页返回的 nextCursor，为空时查询第一页
+     *      pageSize [可选]: 数量，最大为 Page.MAX_CURSOR_PAGE_SIZE
+     *
+     * @param orgId    机构 ID
+     * @param cursor   游标
+     * @param pageSize 数量
+     * @return payload 为这一页的用户和下一页的游标 nextCursor，没有下一页时 nextCursor 为 null
+     * @throws ApplicationException 不是系统管理员或者这个机构的管理员时 code 为 403，游标无效时 code 为 400
+     */
+    @GetMapping(Urls.API_ORGS_USERS)
+    public Result<CursorPage<User>> findUsersByOrgId(@PathVariable long orgId,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false, defaultValue = "20") int pageSize) {
+        checkOrgAdmin(orgId);
+        return Result.ok(userService.findUsersByOrgId(orgId, Page.after(cursor, pageSize)));
+    }
+
+    /**
+     * 导出机构的所有用户，流式写出，不管机构有多少用户内存占用都不变
+     *
+     * 网址: http://localhost:8080/api/orgs/{orgId}/users/export?format=csv
+     * 参数:
+     *      format [可选]: 导出的格式 csv 或者 jsonl，默认为 csv
+     *
+     * @param orgId  机构 ID
+     * @param format 导出的格式
+     * @throws ApplicationException 不是系统管理员或者这个机构的管理员时抛出异常，code 为 403
+     */
+    @GetMapping(Urls.API_ORGS_USERS_EXPORT)
+    public void exportUsers(@PathVariable long orgId,
+                            @RequestParam(required = false, defaultValue = "csv") String format,
+                            HttpServletResponse response) throws IOException {
+        checkOrgAdmin(orgId);
+        UserExportService.Format exportFormat = UserExportService.Format.of(format);
+
+        response.setContentType(exportFormat.getContentType());
+        response.setHeader("Content-Disposition", "attachment;filename=users-" + orgId + "." + exportFormat.getExtension());
+        userExportService.exportUsers(orgId, exportFormat, response.getOutputStream());
+    }
+
     /**
      * 更新用户的昵称、头像、手机、性别、密码。注意，一次只能更新一个属性
      *
@@ -110,4 +168,28 @@ public class UserController extends BaseController {
         userService.resetUserPassword(userId);
         return Result.ok();
     }
+
+    /**
+     * 检查当前用户是否可以访问机构的用户: 系统管理员可以访问所有机构，机构管理员只能访问自己所在的机构
+     *
+     * @param orgId 机构 ID
+     * @throws ApplicationException 没有权限时抛出异常，code 为 403
+     */
+    private void checkOrgAdmin(long orgId) {
+        User current = super.getCurrentUser();
+
+        if (current != null && current.hasRole(Role.ROLE_ADMIN_SYSTEM)) {
+            return;
+        }
+        if (current != null && current.hasRole(Role.ROLE_ADMIN_ORG)) {
+            // token 中没有机构 ID，使用缓存的用户信息
+            User admin = userService.findUser(current.getUserId());
+
+            if (admin != null && admin.getOrgId() == orgId) {
+                return;
+            }
+        }
+
+        throw new ApplicationException("没有权限访问机构 " + orgId + " 的用户", 403);
+    }
 }
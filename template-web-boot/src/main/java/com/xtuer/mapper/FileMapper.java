@@ -1,7 +1,11 @@
 package com.xtuer.mapper;
 
+import com.xtuer.bean.Page;
 import com.xtuer.bean.UploadedFile;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 上传文件的 Mapper
@@ -16,6 +20,26 @@ public interface FileMapper {
      */
     UploadedFile findUploadedFileById(long id);
 
+    /**
+     * 查询 ID 在 [minId, maxId] 之间的上传文件，按 ID 升序排列。
+     * ID 是 Snowflake ID，使用 SnowflakeIdCodec 把上传时间的范围转换为 ID 的范围，查询时只扫描主键的一段连续范围
+     *
+     * @param minId 最小 ID
+     * @param maxId 最大 ID
+     * @param page  分页对象
+     * @return 返回文件的列表
+     */
+    List<UploadedFile> findUploadedFilesByIdRange(@Param("minId") long minId, @Param("maxId") long maxId, @Param("page") Page page);
+
+    /**
+     * 统计 ID 在 [minId, maxId] 之间的上传文件数量
+     *
+     * @param minId 最小 ID
+     * @param maxId 最大 ID
+     * @return 返回文件的数量
+     */
+    int countUploadedFilesByIdRange(@Param("minId") long minId, @Param("maxId") long maxId);
+
     /**
      * 插入或者更新上传的文件
      *
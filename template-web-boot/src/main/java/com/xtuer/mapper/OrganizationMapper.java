@@ -28,6 +28,20 @@ public interface OrganizationMapper {
      */
     Organization findOrganizationByHost(String host);
 
+    /**
+     * 查询所有机构，用于加载域名到机构的路由表
+     *
+     * @return 返回所有机构
+     */
+    List<Organization> findAllOrganizations();
+
+    /**
+     * 查询机构表的版本: 机构数 + 最大的更新时间，新增、修改、删除机构后版本都会变化
+     *
+     * @return 返回版本
+     */
+    String findOrganizationsVersion();
+
     /**
      * 使用机构名称模糊查询查询机构
      *
@@ -36,6 +50,15 @@ public interface OrganizationMapper {
      */
     List<Organization> findOrganizationsLikeName(@Param("name") String name, @Param("page") Page page);
 
+    /**
+     * 使用机构名称模糊查询查询机构，游标分页: 查询 ID 大于 page.afterId 的机构，按 ID 升序排列
+     *
+     * @param name 机构名 (部分)
+     * @param page 游标分页的分页对象
+     * @return 机构数组
+     */
+    List<Organization> findOrganizationsLikeNameAfter(@Param("name") String name, @Param("page") Page page);
+
     /**
      * 判断指定 ID 的机构是否可使用此域名
      *
@@ -1,9 +1,14 @@
 package com.xtuer.mapper;
 
+import com.xtuer.bean.Page;
 import com.xtuer.bean.Role;
 import com.xtuer.bean.User;
+import com.xtuer.bean.UserLoginRecord;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -19,6 +24,14 @@ public interface UserMapper {
      */
     User findUserById(long userId);
 
+    /**
+     * 使用 ID 批量查找用户，使用一个 IN 查询
+     *
+     * @param userIds 用户 ID
+     * @return 返回用户列表，不存在的用户不包含在其中，顺序不确定
+     */
+    List<User> findUsersByIds(@Param("userIds") Collection<Long> userIds);
+
     /**
      * 使用用户名查找学校下的用户 (因为使用的是 BCrypt 加密密码，每次计算出的密码都是不同的，所以不能使用密码进行查询)
      *
@@ -38,6 +51,45 @@ public interface UserMapper {
      */
     List<User> findUsersByOrgId(long orgId, int offset, int count);
 
+    /**
+     * 游标分页查找机构的用户: 查询 ID 大于 page.afterId 的用户，按 ID 升序排列，每一页的代价都相同
+     *
+     * @param orgId 机构 ID
+     * @param page  游标分页的分页对象
+     * @return 返回用户列表
+     */
+    List<User> findUsersByOrgIdAfter(@Param("orgId") long orgId, @Param("page") Page page);
+
+    /**
+     * 流式查询机构的用户: 查询 ID 大于 page.afterId 的最多 page.size 个用户，按 ID 升序排列，不包含密码。
+     * 使用 Cursor 逐行读取，遍历期间 SqlSession 必须保持打开
+     *
+     * @param orgId 机构 ID
+     * @param page  游标分页的分页对象
+     * @return 返回用户的游标
+     */
+    Cursor<User> streamUsersByOrgId(@Param("orgId") long orgId, @Param("page") Page page);
+
+    /**
+     * 查询 ID 在 [minId, maxId] 之间的用户，按 ID 升序排列。
+     * ID 是 Snowflake ID，使用 SnowflakeIdCodec 把创建时间的范围转换为 ID 的范围，查询时只扫描主键的一段连续范围
+     *
+     * @param minId 最小 ID
+     * @param maxId 最大 ID
+     * @param page  分页对象
+     * @return 返回用户列表
+     */
+    List<User> findUsersByIdRange(@Param("minId") long minId, @Param("maxId") long maxId, @Param("page") Page page);
+
+    /**
+     * 统计 ID 在 [minId, maxId] 之间的用户数量
+     *
+     * @param minId 最小 ID
+     * @param maxId 最大 ID
+     * @return 返回用户数量
+     */
+    int countUsersByIdRange(@Param("minId") long minId, @Param("maxId") long maxId);
+
     /**
      * 插入或更新用户: 如果 ID 存在或者 school_id + username 的组合存在则进行更新
      *
@@ -45,6 +97,22 @@ public interface UserMapper {
      */
     void upsertUser(User user);
 
+    /**
+     * 批量插入或更新用户，使用一条多行的 INSERT ... ON DUPLICATE KEY UPDATE 语句，更新时不修改密码
+     *
+     * @param users 用户
+     */
+    void upsertUsers(@Param("users") List<User> users);
+
+    /**
+     * 查找机构下指定账号的用户的 ID，批量导入时使用一个 IN 查询得到已存在的用户
+     *
+     * @param orgId     机构 ID
+     * @param usernames 账号
+     * @return 返回用户列表，只有 userId, username 和 orgId
+     */
+    List<User> findUserIdsByOrgIdAndUsernames(@Param("orgId") long orgId, @Param("usernames") Collection<String> usernames);
+
     /**
      * 创建用户的登录记录
      *
@@ -53,6 +121,13 @@ public interface UserMapper {
      */
     void insertUserLoginRecord(long userId, String username);
 
+    /**
+     * 批量创建用户的登录记录，使用一条多行的 INSERT 语句
+     *
+     * @param records 登录记录
+     */
+    void insertUserLoginRecords(@Param("records") List<UserLoginRecord> records);
+
     /**
      * 更新用户的昵称
      *
@@ -101,4 +176,11 @@ public interface UserMapper {
      */
     void insertUserRole(long userId, Role role);
 
+    /**
+     * 批量插入用户的角色，使用一条多行的 INSERT 语句 (已经存在的角色自动忽略)
+     *
+     * @param users 用户，每个用户至少有一个角色
+     */
+    void insertUserRoles(@Param("users") List<User> users);
+
 }
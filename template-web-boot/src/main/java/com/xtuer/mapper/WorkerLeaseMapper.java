@@ -0,0 +1,62 @@
+package com.xtuer.mapper;
+
+import com.xtuer.bean.WorkerLease;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 机器 ID 租约的 Mapper
+ */
+@Mapper
+public interface WorkerLeaseMapper {
+    /**
+     * 查找一个可以回收的租约: 过期时间早于 expiredBefore 的租约中机器 ID 最小的一个
+     *
+     * @param expiredBefore 过期时间早于此时间的租约才能被回收，单位毫秒
+     * @return 返回可以回收的租约，没有时返回 null
+     */
+    WorkerLease findReclaimableLease(long expiredBefore);
+
+    /**
+     * 查找最小的没有租约的机器 ID: 0 没有租约时为 0，否则为第一个后面没有租约的机器 ID + 1 (表中的机器 ID 不连续时也不会重复)
+     *
+     * @return 返回空闲的机器 ID，可能超过支持的最大机器 ID
+     */
+    int findFreeWorkerId();
+
+    /**
+     * 创建新的租约，fence 为 1
+     *
+     * @param lease 租约
+     */
+    void insertLease(WorkerLease lease);
+
+    /**
+     * 回收租约: 只有 fence 没有变化时才能回收成功，回收后 fence 加 1
+     *
+     * @param workerId  机器 ID
+     * @param fence     查询到的租约的 fence
+     * @param owner     新的持有者
+     * @param expiredAt 新的过期时间
+     * @return 回收成功返回 1，否则返回 0
+     */
+    int reclaimLease(@Param("workerId") int workerId, @Param("fence") long fence, @Param("owner") String owner, @Param("expiredAt") long expiredAt);
+
+    /**
+     * 续约: 只有 fence 没有变化时才能续约成功
+     *
+     * @param workerId  机器 ID
+     * @param fence     申请租约时得到的 fence
+     * @param expiredAt 新的过期时间
+     * @return 续约成功返回 1，否则返回 0
+     */
+    int renewLease(@Param("workerId") int workerId, @Param("fence") long fence, @Param("expiredAt") long expiredAt);
+
+    /**
+     * 查询机器 ID 的租约
+     *
+     * @param workerId 机器 ID
+     * @return 返回租约，不存在时返回 null
+     */
+    WorkerLease findLease(int workerId);
+}
@@ -4,13 +4,11 @@ import com.xtuer.bean.SecurityConst;
 import com.xtuer.bean.Urls;
 import com.xtuer.bean.User;
 import com.xtuer.config.AppConfig;
-import com.xtuer.util.SecurityUtils;
 import com.xtuer.util.WebUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -20,7 +18,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Collection;
 
 /**
  * 使用 token 进行身份验证的过滤器。
@@ -63,10 +60,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // [2.2] 如果 token 不为 null，从 token 中提取 user
-        User user = jwtService.extractUser(token);
+        // [2.2] 如果 token 不为 null，从 token 中提取 user (校验通过的 token 有缓存)
+        JwtService.VerifiedToken verified = jwtService.verifyToken(token);
 
-        if (user == null) {
+        if (verified == null) {
             // [3] user 为空则说明 token 无效
             log.warn("[失败] Token 无效: {}", token);
 
@@ -84,8 +81,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return; // 返回，不继续执行下一个 filter
         } else {
             // [4] user 不为空，则认证成功，把用户信息放入安全上下文中，供 Spring Security 后续使用
-            Collection<? extends GrantedAuthority> authorities = SecurityUtils.buildUserDetails(user).getAuthorities();
-            Authentication auth = new UsernamePasswordAuthenticationToken(user, user.getPassword(), authorities);
+            User user = verified.getUser();
+            Authentication auth = new UsernamePasswordAuthenticationToken(user, user.getPassword(), verified.getAuthorities());
             SecurityContextHolder.getContext().setAuthentication(auth);
 
             // 如果 header 里有 save-auth-token: true，则保存 token 到 cookie
@@ -1,19 +1,23 @@
 package com.xtuer.security;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.TypeReference;
 import com.xtuer.bean.Role;
 import com.xtuer.bean.User;
 import com.xtuer.config.AppConfig;
 import com.xtuer.util.Jwt;
+import com.xtuer.util.SecurityUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 生成 token 的 service.
@@ -21,6 +25,13 @@ import java.util.Set;
  * 用法:
  * 使用用户生成 Token: TokenService.generateToken(user)
  * 从 Token 提取用户: TokenService.extractUser(token)
+ *
+ * 校验通过的 token 缓存在内存中 (token -> 用户和权限)，同一个 token 再次访问时不需要再解码、解析 JSON 和计算签名:
+ *     1. 缓存项在 token 的 expiredAt 时过期
+ *     2. 缓存的数量最多为 app.authTokenCacheSize，满了时先删除过期的缓存项，仍然是满的则随机删除 1/10 的缓存项
+ *     3. 只缓存校验通过的 token，无效的 token 不会占用缓存
+ *
+ * 被撤销的 token 无效 (注销、修改密码等)，缓存命中时也需要检查是否被撤销，见 TokenRevocationService。
  */
 @Service
 @Getter
@@ -30,11 +41,20 @@ public class JwtService {
     @Autowired
     protected AppConfig config;
 
+    @Autowired
+    protected TokenRevocationService revocationService;
+
+    // 校验通过的 token 的缓存
+    @Getter(AccessLevel.NONE)
+    private final Map<String, VerifiedToken> tokenCache = new ConcurrentHashMap<>();
+    private final LongAdder cacheHits   = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
     // 生成 token
     public String generateToken(User user) {
         // Token 中保存 id, username, nickname, roles
         long expiredAt = System.currentTimeMillis() + config.getAuthTokenDuration() * 1000L;
-        return Jwt.create(config.getAppId(), config.getAppKey()).expiredAt(expiredAt)
+        return Jwt.create(config.getAppId(), config.getAppKey()).algorithm(config.getAuthTokenAlgorithm()).expiredAt(expiredAt)
                 .param("userId",   user.getUserId() + "")
                 .param("username", user.getUsername())
                 .param("nickname", user.getNickname())
@@ -44,30 +64,200 @@ public class JwtService {
 
     // 检测 token 的有效性
     public boolean checkToken(String token) {
-        return Jwt.checkToken(token, config.getAppKey());
+        return Jwt.checkToken(token, config.getAppKey(), config.isAuthTokenAcceptMd5());
     }
 
     // 从 token 中提取用户
     public User extractUser(String token) {
-        if (!this.checkToken(token)) {
+        VerifiedToken verified = this.verifyToken(token);
+        return verified != null ? verified.getUser() : null;
+    }
+
+    /**
+     * 撤销 token，例如注销时，token 无效时不需要撤销
+     *
+     * @param token 身份认证的 token
+     */
+    public void revokeToken(String token) {
+        VerifiedToken verified = this.verifyToken(token);
+
+        if (verified != null) {
+            revocationService.revokeToken(verified.getTokenId(), verified.getExpiredAt());
+            tokenCache.remove(token);
+        }
+    }
+
+    /**
+     * 撤销用户当前时间之前签发的所有 token，例如修改密码、禁用账号时
+     *
+     * @param userId 用户 ID
+     */
+    public void revokeUserTokens(long userId) {
+        revocationService.revokeUser(userId);
+    }
+
+    /**
+     * 校验 token 并提取用户和权限，优先从缓存中获取，被撤销的 token 无效
+     *
+     * @param token 身份认证的 token
+     * @return 返回 token 对应的用户和权限，token 无效时返回 null
+     */
+    public VerifiedToken verifyToken(String token) {
+        VerifiedToken verified = this.verifyTokenSignature(token);
+
+        if (verified != null && revocationService.isRevoked(verified.getTokenId(), verified.getUserId(), verified.getSignedAt())) {
             return null;
         }
 
-        try {
-            // 获取 token 中保存的 id, username, nickname, roles
-            Map<String, String> params = Jwt.params(token);
-            long         id   = Long.parseLong(params.get("userId"));
-            String username   = params.get("username");
-            String nickname   = params.get("nickname");
-            Set<String> roles = JSON.parseObject(params.get("roles"), new TypeReference<Set<String>>() {});
-            Role[] rolesX     = roles.stream().map(role -> Enum.valueOf(Role.class, role)).toArray(Role[]::new);
+        return verified;
+    }
+
+    /**
+     * 校验 token 的签名和有效期并提取用户和权限，优先从缓存中获取
+     */
+    private VerifiedToken verifyTokenSignature(String token) {
+        if (token == null) {
+            return null;
+        }
 
-            User user = new User(id, username, "[protected]", rolesX);
+        // [1] 缓存中有并且没有过期则直接返回
+        VerifiedToken verified = tokenCache.get(token);
+
+        if (verified != null) {
+            if (!verified.isExpired()) {
+                cacheHits.increment();
+                return verified;
+            }
+
+            tokenCache.remove(token, verified);
+        }
+
+        // [2] 缓存中没有则校验 token，校验通过的放入缓存
+        cacheMisses.increment();
+        verified = this.parseToken(token);
+
+        if (verified != null) {
+            if (tokenCache.size() >= config.getAuthTokenCacheSize()) {
+                this.evictTokens();
+            }
+
+            tokenCache.put(token, verified);
+        }
+
+        return verified;
+    }
+
+    /**
+     * 获取 token 缓存的命中次数
+     *
+     * @return 返回命中次数
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * 获取 token 缓存的未命中次数
+     *
+     * @return 返回未命中次数
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * 获取 token 缓存的数量
+     *
+     * @return 返回缓存的数量
+     */
+    public int getCacheSize() {
+        return tokenCache.size();
+    }
+
+    /**
+     * 校验 token 并解析出用户和权限，token 无效时返回 null
+     */
+    private VerifiedToken parseToken(String token) {
+        // 校验和解析 token 只解码和解析一次 payload
+        Jwt.Claims claims = Jwt.verify(token, config.getAppKey(), config.isAuthTokenAcceptMd5());
+
+        if (claims == null || claims.get("userId") == null) {
+            return null;
+        }
+
+        // 获取 token 中保存的 id, username, nickname, roles
+        User user = new User(claims.getUserId(), claims.get("username"), "[protected]");
+        user.setNickname(claims.get("nickname"));
+        user.setRoles(claims.getRoles());
+
+        String tokenId = token.substring(token.lastIndexOf('.') + 1); // 签名是唯一的，作为 token 的 ID
+        long  signedAt = NumberUtils.toLong(claims.get("signedAt"), 0);
+
+        return new VerifiedToken(tokenId, user, SecurityUtils.buildUserDetails(user).getAuthorities(), signedAt, claims.getExpiredAt());
+    }
+
+    /**
+     * 缓存满了时先删除过期的缓存项，仍然是满的则删除 1/10 的缓存项 (ConcurrentHashMap 的遍历顺序和插入顺序无关，相当于随机删除)
+     */
+    private void evictTokens() {
+        tokenCache.values().removeIf(VerifiedToken::isExpired);
+
+        int toRemove = tokenCache.size() - config.getAuthTokenCacheSize() * 9 / 10;
+        Iterator<String> iter = tokenCache.keySet().iterator();
+
+        while (toRemove-- > 0 && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * 校验通过的 token: 包含 token 的 ID、token 中的用户信息、用户的权限、token 的签发时间和过期时间。
+     * 缓存中的对象被多个请求共享，是不可修改的: 只保存用户的 id, username, nickname, roles，getUser() 每次返回一个新的用户对象，
+     * 请求中修改当前用户 (SecurityUtils.getCurrentUser()) 不会影响到使用同一个 token 的其他请求。
+     */
+    @Getter
+    public static final class VerifiedToken {
+        private final String tokenId;
+        private final long userId;
+        private final String username;
+        private final String nickname;
+        private final Set<Role> roles;
+        private final Collection<? extends GrantedAuthority> authorities;
+        private final long signedAt;
+        private final long expiredAt;
+
+        VerifiedToken(String tokenId, User user, Collection<? extends GrantedAuthority> authorities, long signedAt, long expiredAt) {
+            this.tokenId     = tokenId;
+            this.userId      = user.getUserId();
+            this.username    = user.getUsername();
+            this.nickname    = user.getNickname();
+            this.roles       = Collections.unmodifiableSet(new HashSet<>(user.getRoles()));
+            this.authorities = Collections.unmodifiableCollection(authorities);
+            this.signedAt    = signedAt;
+            this.expiredAt   = expiredAt;
+        }
+
+        /**
+         * 获取 token 中的用户，每次调用返回一个新的用户对象 (密码为 [protected])
+         *
+         * @return 返回用户
+         */
+        public User getUser() {
+            User user = new User(userId, username, "[protected]");
             user.setNickname(nickname);
+            user.setRoles(new HashSet<>(roles));
 
             return user;
-        } catch (Exception ex) {
-            return null;
+        }
+
+        /**
+         * 判断 token 是否已经过期
+         *
+         * @return 过期返回 true，否则返回 false
+         */
+        public boolean isExpired() {
+            return expiredAt < System.currentTimeMillis();
         }
     }
 }
@@ -0,0 +1,39 @@
+package com.xtuer.security;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 使用内存保存撤销记录，单节点部署和测试时代替 Redis 使用
+ */
+public class LocalTokenRevocationStore implements TokenRevocationStore {
+    private final Map<String, Long> revokedTokens  = new ConcurrentHashMap<>();
+    private final Map<Long, Long>   userWatermarks = new ConcurrentHashMap<>();
+
+    @Override
+    public void revokeToken(String tokenId, long expiredAt) {
+        revokedTokens.put(tokenId, expiredAt);
+    }
+
+    @Override
+    public void revokeUser(long userId, long issuedBefore) {
+        userWatermarks.merge(userId, issuedBefore, Math::max);
+    }
+
+    @Override
+    public Map<String, Long> findRevokedTokens() {
+        return new HashMap<>(revokedTokens);
+    }
+
+    @Override
+    public Map<Long, Long> findUserWatermarks() {
+        return new HashMap<>(userWatermarks);
+    }
+
+    @Override
+    public void purge(long tokenExpiredBefore, long watermarkIssuedBefore) {
+        revokedTokens.values().removeIf(expiredAt -> expiredAt < tokenExpiredBefore);
+        userWatermarks.values().removeIf(issuedBefore -> issuedBefore < watermarkIssuedBefore);
+    }
+}
@@ -0,0 +1,40 @@
+package com.xtuer.security;
+
+import com.xtuer.exception.ApplicationException;
+import com.xtuer.service.PasswordService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * 表单登录使用的密码编码器，使用 PasswordService 在线程池中计算 BCrypt。
+ * PasswordService 繁忙时抛出的 ApplicationException 不是 AuthenticationException，在 Spring Security 的 Filter 中
+ * 会变成 500，所以转换为 PasswordBusyException，由登录失败的处理器返回服务器繁忙。
+ */
+public class LoginPasswordEncoder implements PasswordEncoder {
+    private final PasswordService passwordService;
+
+    public LoginPasswordEncoder(PasswordService passwordService) {
+        this.passwordService = passwordService;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        try {
+            return passwordService.encode(rawPassword);
+        } catch (ApplicationException ex) {
+            throw translate(ex);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        try {
+            return passwordService.matches(rawPassword, encodedPassword);
+        } catch (ApplicationException ex) {
+            throw translate(ex);
+        }
+    }
+
+    private static RuntimeException translate(ApplicationException ex) {
+        return ex.getCode() == PasswordService.BUSY_CODE ? new PasswordBusyException(ex.getMessage(), ex) : ex;
+    }
+}
@@ -0,0 +1,12 @@
+package com.xtuer.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * 表单登录时计算 BCrypt 的线程池繁忙，是 AuthenticationException，由 WebLoginFailureHandler 返回服务器繁忙
+ */
+public class PasswordBusyException extends AuthenticationServiceException {
+    public PasswordBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
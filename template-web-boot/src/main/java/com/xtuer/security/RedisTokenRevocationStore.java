@@ -0,0 +1,99 @@
+package com.xtuer.security;
+
+import com.xtuer.bean.CacheConst;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 使用 Redis 的 Hash 保存撤销记录，所有节点共享:
+ *     xtuer:revoked-tokens: tokenId -> token 的过期时间
+ *     xtuer:revoked-users : userId  -> issuedBefore
+ * 使用 JetCache 的 Redis 连接池 (见 WebConfig.jedisPool)，和缓存使用相同的密码、数据库和超时配置。
+ *
+ * 删除过期的撤销记录使用 Lua 脚本在 Redis 中执行，不把整个 Hash 传输到节点，也不会误删删除期间新写入的记录；
+ * 所有节点每 PURGE_INTERVAL_SECONDS 秒只有一个节点执行 (SET NX EX 作为锁，到期自动释放)。
+ */
+@Component
+public class RedisTokenRevocationStore implements TokenRevocationStore {
+    private static final String KEY_TOKENS = CacheConst.CACHE + "revoked-tokens";
+    private static final String KEY_USERS  = CacheConst.CACHE + "revoked-users";
+    private static final String KEY_PURGE  = CacheConst.CACHE + "revoked-purge";
+    private static final int PURGE_INTERVAL_SECONDS = 60;
+
+    // KEYS[i] 为 Hash，删除其中值小于 ARGV[i] 的字段，每次 HDEL 最多 1000 个字段 (unpack 的参数个数有限制)
+    private static final String PURGE_SCRIPT =
+            "local count = 0\n" +
+            "for k = 1, #KEYS do\n" +
+            "    local values  = redis.call('HGETALL', KEYS[k])\n" +
+            "    local expired = {}\n" +
+            "    for i = 1, #values, 2 do\n" +
+            "        if (tonumber(values[i + 1]) or 0) < tonumber(ARGV[k]) then expired[#expired + 1] = values[i] end\n" +
+            "    end\n" +
+            "    for i = 1, #expired, 1000 do\n" +
+            "        redis.call('HDEL', KEYS[k], unpack(expired, i, math.min(i + 999, #expired)))\n" +
+            "    end\n" +
+            "    count = count + #expired\n" +
+            "end\n" +
+            "return count";
+
+    private final JedisPool pool;
+
+    public RedisTokenRevocationStore(JedisPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void revokeToken(String tokenId, long expiredAt) {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.hset(KEY_TOKENS, tokenId, String.valueOf(expiredAt));
+        }
+    }
+
+    @Override
+    public void revokeUser(long userId, long issuedBefore) {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.hset(KEY_USERS, String.valueOf(userId), String.valueOf(issuedBefore));
+        }
+    }
+
+    @Override
+    public Map<String, Long> findRevokedTokens() {
+        Map<String, Long> tokens = new HashMap<>();
+
+        try (Jedis jedis = pool.getResource()) {
+            jedis.hgetAll(KEY_TOKENS).forEach((tokenId, expiredAt) -> tokens.put(tokenId, NumberUtils.toLong(expiredAt)));
+        }
+
+        return tokens;
+    }
+
+    @Override
+    public Map<Long, Long> findUserWatermarks() {
+        Map<Long, Long> watermarks = new HashMap<>();
+
+        try (Jedis jedis = pool.getResource()) {
+            jedis.hgetAll(KEY_USERS).forEach((userId, issuedBefore) -> watermarks.put(NumberUtils.toLong(userId), NumberUtils.toLong(issuedBefore)));
+        }
+
+        return watermarks;
+    }
+
+    @Override
+    public void purge(long tokenExpiredBefore, long watermarkIssuedBefore) {
+        try (Jedis jedis = pool.getResource()) {
+            // 其他节点最近已经删除过了
+            if (jedis.set(KEY_PURGE, "1", "NX", "EX", PURGE_INTERVAL_SECONDS) == null) {
+                return;
+            }
+
+            jedis.eval(PURGE_SCRIPT, Arrays.asList(KEY_TOKENS, KEY_USERS),
+                    Arrays.asList(String.valueOf(tokenExpiredBefore), String.valueOf(watermarkIssuedBefore)));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.xtuer.security;
+
+import com.xtuer.config.AppConfig;
+import com.xtuer.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 撤销 token 的服务: 注销时撤销当前 token，修改密码、禁用账号时撤销用户之前签发的所有 token。
+ *
+ * 撤销记录保存在共享存储 TokenRevocationStore 中，每个节点定时把撤销记录同步到内存的快照中:
+ *     1. 撤销的 token ID 和有水位线的用户 ID 分别放入布隆过滤器
+ *     2. 同时保存精确的集合: 撤销的 token ID 集合，userId -> issuedBefore
+ * 判断 token 是否被撤销时先查询布隆过滤器，绝大部分 token 没有被撤销，只需要计算几个哈希就能确定，
+ * 布隆过滤器返回可能被撤销时再使用精确的集合判断，避免误判。
+ *
+ * 本节点撤销时写入共享存储后直接添加到当前快照 (布隆过滤器和集合)，立即生效，不访问共享存储中的全部撤销记录；
+ * 其他节点撤销的 token 最多在 app.tokenRevocationRefreshInterval 后生效。
+ * 过期的 token 的撤销记录、早于 token 有效期的水位线只在定时同步时删除。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+    private static final double FPP = 0.01;          // 布隆过滤器的误判率
+    private static final int    MIN_CAPACITY = 1024; // 布隆过滤器的最小容量，给同步之间本节点的撤销留出空间
+
+    private final TokenRevocationStore store;
+    private final AppConfig config;
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    // 同步开始后本节点的撤销记录，同步时可能没有读到，创建新的快照时再添加进去，使用 lock 保护
+    private final Object lock = new Object();
+    private final Map<String, Long> pendingTokens = new HashMap<>();
+    private final Map<Long, Long> pendingWatermarks = new HashMap<>();
+    private ScheduledExecutorService refreshExecutor;
+
+    public TokenRevocationService(TokenRevocationStore store, AppConfig config) {
+        this.store  = store;
+        this.config = config;
+    }
+
+    /**
+     * 启动时同步撤销记录，并开始定时同步
+     */
+    @PostConstruct
+    public void start() {
+        refreshSafely();
+
+        long interval = config.getTokenRevocationRefreshInterval();
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-revocation-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::refreshSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 撤销单个 token，例如注销时
+     *
+     * @param tokenId   token 的 ID
+     * @param expiredAt token 的过期时间
+     */
+    public void revokeToken(String tokenId, long expiredAt) {
+        store.revokeToken(tokenId, expiredAt);
+
+        synchronized (lock) {
+            pendingTokens.put(tokenId, expiredAt);
+            snapshot.addToken(tokenId);
+        }
+
+        log.info("[撤销] 撤销 token: {}", tokenId);
+    }
+
+    /**
+     * 撤销用户当前时间之前签发的所有 token，例如修改密码、禁用账号时
+     *
+     * @param userId 用户 ID
+     */
+    public void revokeUser(long userId) {
+        long issuedBefore = System.currentTimeMillis();
+        store.revokeUser(userId, issuedBefore);
+
+        synchronized (lock) {
+            pendingWatermarks.merge(userId, issuedBefore, Math::max);
+            snapshot.addWatermark(userId, issuedBefore);
+        }
+
+        log.info("[撤销] 撤销用户 {} 的所有 token", userId);
+    }
+
+    /**
+     * 判断 token 是否被撤销了
+     *
+     * @param tokenId  token 的 ID
+     * @param userId   token 所属用户的 ID
+     * @param signedAt token 的签发时间
+     * @return 被撤销返回 true，否则返回 false
+     */
+    public boolean isRevoked(String tokenId, long userId, long signedAt) {
+        return snapshot.isRevoked(tokenId, userId, signedAt);
+    }
+
+    /**
+     * 从共享存储同步撤销记录，重新创建快照，同步期间本节点的撤销记录也添加到新的快照中
+     */
+    public synchronized void refresh() {
+        long now = System.currentTimeMillis();
+        long watermarkIssuedBefore = now - config.getAuthTokenDuration() * 1000L;
+
+        synchronized (lock) {
+            pendingTokens.clear();
+            pendingWatermarks.clear();
+        }
+
+        store.purge(now, watermarkIssuedBefore);
+
+        Map<String, Long> tokens = store.findRevokedTokens();
+        Map<Long, Long> watermarks = store.findUserWatermarks();
+        tokens.values().removeIf(expiredAt -> expiredAt < now);
+        watermarks.values().removeIf(issuedBefore -> issuedBefore < watermarkIssuedBefore);
+
+        synchronized (lock) {
+            tokens.putAll(pendingTokens);
+            pendingWatermarks.forEach((userId, issuedBefore) -> watermarks.merge(userId, issuedBefore, Math::max));
+            snapshot = new Snapshot(tokens, watermarks);
+        }
+    }
+
+    /**
+     * 同步撤销记录，出错时继续使用之前的快照
+     */
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            log.warn("[撤销] 同步撤销记录失败: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * 撤销记录的快照，定时同步时重新创建，同步之间只添加本节点的撤销记录，可以在读取的同时添加
+     */
+    private static final class Snapshot {
+        private final Set<String> tokens;
+        private final Map<Long, Long> watermarks;
+        private final BloomFilter tokenFilter;
+        private final BloomFilter userFilter;
+
+        Snapshot(Map<String, Long> tokens, Map<Long, Long> watermarks) {
+            this.tokens      = ConcurrentHashMap.newKeySet();
+            this.watermarks  = new ConcurrentHashMap<>(watermarks);
+            this.tokenFilter = new BloomFilter(Math.max(tokens.size() * 2, MIN_CAPACITY), FPP);
+            this.userFilter  = new BloomFilter(Math.max(watermarks.size() * 2, MIN_CAPACITY), FPP);
+
+            tokens.keySet().forEach(this::addToken);
+            this.watermarks.keySet().forEach(userFilter::put);
+        }
+
+        /**
+         * 先添加到集合再添加到布隆过滤器，布隆过滤器返回可能被撤销时集合中一定已经有了
+         */
+        void addToken(String tokenId) {
+            tokens.add(tokenId);
+            tokenFilter.put(tokenId);
+        }
+
+        void addWatermark(long userId, long issuedBefore) {
+            watermarks.merge(userId, issuedBefore, Math::max);
+            userFilter.put(userId);
+        }
+
+        boolean isRevoked(String tokenId, long userId, long signedAt) {
+            // 先查询布隆过滤器，可能被撤销时再使用精确的集合判断
+            if (tokenFilter.mightContain(tokenId) && tokens.contains(tokenId)) {
+                return true;
+            }
+            if (userFilter.mightContain(userId)) {
+                Long issuedBefore = watermarks.get(userId);
+                return issuedBefore != null && signedAt < issuedBefore;
+            }
+
+            return false;
+        }
+    }
+}
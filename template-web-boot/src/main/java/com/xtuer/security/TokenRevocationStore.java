@@ -0,0 +1,49 @@
+package com.xtuer.security;
+
+import java.util.Map;
+
+/**
+ * 撤销的 token 的共享存储，所有节点从这里同步撤销记录。
+ * 撤销记录有 2 种:
+ *     1. 撤销单个 token: tokenId -> token 的过期时间 (过期后记录可以删除)
+ *     2. 撤销用户在某个时间之前签发的所有 token: userId -> issuedBefore (水位线)
+ */
+public interface TokenRevocationStore {
+    /**
+     * 撤销单个 token
+     *
+     * @param tokenId   token 的 ID
+     * @param expiredAt token 的过期时间，过期后撤销记录可以删除
+     */
+    void revokeToken(String tokenId, long expiredAt);
+
+    /**
+     * 撤销用户在 issuedBefore 之前签发的所有 token
+     *
+     * @param userId       用户 ID
+     * @param issuedBefore 在此时间之前签发的 token 都无效，单位毫秒
+     */
+    void revokeUser(long userId, long issuedBefore);
+
+    /**
+     * 查询所有撤销的 token
+     *
+     * @return 返回 tokenId -> token 的过期时间
+     */
+    Map<String, Long> findRevokedTokens();
+
+    /**
+     * 查询所有用户的水位线
+     *
+     * @return 返回 userId -> issuedBefore
+     */
+    Map<Long, Long> findUserWatermarks();
+
+    /**
+     * 删除不再需要的撤销记录，不需要返回或者传输被删除的记录，多个节点共享的存储可以限制为只有一个节点执行
+     *
+     * @param tokenExpiredBefore     删除过期时间早于此时间的 token
+     * @param watermarkIssuedBefore  删除早于此时间的水位线 (此时间之前签发的 token 都已经过期了)
+     */
+    void purge(long tokenExpiredBefore, long watermarkIssuedBefore);
+}
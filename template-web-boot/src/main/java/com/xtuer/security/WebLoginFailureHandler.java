@@ -0,0 +1,40 @@
+package com.xtuer.security;
+
+import com.xtuer.bean.Result;
+import com.xtuer.bean.Urls;
+import com.xtuer.service.PasswordService;
+import com.xtuer.util.WebUtils;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 网页 Form 表单登陆失败处理器: 服务器繁忙时 AJAX 请求返回 Result.fail("服务器繁忙，请稍后再试", BUSY_CODE)，
+ * 普通请求跳转到 /login?busy；账号或密码错误时和默认的一样跳转到 /login?error
+ */
+@Component
+public class WebLoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+    public WebLoginFailureHandler() {
+        super(Urls.PAGE_LOGIN + "?error");
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response, AuthenticationException exception)
+            throws IOException, ServletException {
+        if (!(exception instanceof PasswordBusyException)) {
+            super.onAuthenticationFailure(request, response, exception);
+            return;
+        }
+
+        if (WebUtils.useAjax(request)) {
+            WebUtils.ajaxResponse(response, Result.fail(exception.getMessage(), PasswordService.BUSY_CODE));
+        } else {
+            response.sendRedirect(Urls.PAGE_LOGIN + "?busy");
+        }
+    }
+}
@@ -47,10 +47,12 @@ public class WebLoginSuccessHandler implements AuthenticationSuccessHandler {
         // 5. 登录成功后根据用户的角色跳转到对应的页面
 
         // [1] 获取登录用户 (访问这个函数，说明是通过表单成功登录过来的，一定能够查询到用户)
+        //     Spring Security 已经校验过密码，不需要再计算一次 BCrypt，如果密码的 cost 和配置的不同则在后台重新加密
         String username = request.getParameter(SecurityConst.LOGIN_USERNAME);
         String password = request.getParameter(SecurityConst.LOGIN_PASSWORD);
         long   orgId    = orgService.getCurrentOrganizationId();
-        User   user     = userService.findUser(username, password, orgId);
+        User   user     = userService.findUser(username, orgId);
+        userService.rehashPasswordIfNeeded(user, password);
 
         // [2] 创建用户的登录记录
         // [3] 生成用户的 token 保存到 cookie
@@ -2,6 +2,7 @@ package com.xtuer.security;
 
 import com.xtuer.bean.SecurityConst;
 import com.xtuer.util.WebUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.logout.LogoutSuccessHandler;
@@ -12,12 +13,21 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 /**
- * 网页上注销成功的处理器: 删除 Cookie 中的 auth-token，security 中的身份信息，然后跳转到登录页
+ * 网页上注销成功的处理器: 撤销 auth-token，删除 Cookie 中的 auth-token，security 中的身份信息，然后跳转到登录页
  */
 @Component
 public class WebLogoutSuccessHandler implements LogoutSuccessHandler {
+    @Autowired
+    private JwtService jwtService;
+
     @Override
     public void onLogoutSuccess(HttpServletRequest request, HttpServletResponse response, Authentication authentication) throws IOException {
+        // 撤销 token，复制出去的 token 在注销后也不能再使用
+        String token = WebUtils.getAuthToken(request);
+        if (token != null) {
+            jwtService.revokeToken(token);
+        }
+
         SecurityContextHolder.getContext().setAuthentication(null);
         WebUtils.deleteCookie(response, SecurityConst.AUTH_TOKEN_KEY);
         response.sendRedirect("/login?logout");
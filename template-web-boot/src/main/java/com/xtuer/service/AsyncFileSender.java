@@ -0,0 +1,281 @@
+package com.xtuer.service;
+
+import com.xtuer.config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 使用 Servlet 3.1 的非阻塞 IO 发送文件，客户端接收很慢时不占用 Tomcat 的请求线程:
+ *     1. 请求线程调用 request.startAsync() 后立即返回，不使用容器的超时 (它限制的是下载的总时长，大文件在慢速的客户端上会被中断)
+ *     2. socket 可写时 (WriteListener.onWritePossible) 在 app.file.async.threads 个线程的 IO 线程池中读取文件并写出，
+ *        直到 output.isReady() 返回 false (socket 的发送缓冲区满了)，等待下次可写时再继续
+ *     3. 写完、空闲超时 (超过 app.file.async.timeout 没有写出任何数据)、出错或者客户端断开时关闭文件并结束请求，
+ *        空闲超时由一个定时线程检查，每次写出数据时重新计时
+ * 用于 ResponseUtils 不能使用 sendfile 时的整个文件和单个 range 的响应。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class AsyncFileSender {
+    private static final int CHUNK_SIZE = 65536; // 每次读取 64KB
+
+    private final AppConfig config;
+    private final ExecutorService ioExecutor;
+    private final ScheduledExecutorService idleChecker; // 检查空闲超时
+    private final Set<Transfer> transfers = ConcurrentHashMap.newKeySet(); // 正在发送的文件
+
+    private final AtomicInteger activeCount    = new AtomicInteger(); // 正在发送的文件数
+    private final LongAdder     completedCount = new LongAdder();     // 发送完成的文件数
+    private final LongAdder     failedCount    = new LongAdder();     // 超时、出错或者客户端断开的文件数
+    private final LongAdder     sentBytes      = new LongAdder();     // 发送的字节数
+
+    public AsyncFileSender(AppConfig config) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.config = config;
+        this.ioExecutor = Executors.newFixedThreadPool(Math.max(1, config.getFileAsyncThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "async-file-io-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.idleChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "async-file-idle");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // 每 1/2 超时时间检查一次，最少 100 毫秒，最多 5 秒
+        long timeout = config.getFileAsyncTimeout();
+        if (timeout > 0) {
+            long period = Math.max(100, Math.min(timeout / 2, 5000));
+            idleChecker.scheduleWithFixedDelay(this::checkIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        idleChecker.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+
+    /**
+     * 判断请求是否可以使用异步发送
+     *
+     * @param request HttpServletRequest 对象
+     * @return 启用了异步发送并且请求支持异步时返回 true
+     */
+    public boolean isEnabled(HttpServletRequest request) {
+        return config.isFileAsyncEnabled() && request.isAsyncSupported() && !request.isAsyncStarted();
+    }
+
+    /**
+     * 异步发送文件的一部分到 response，调用前需要设置好响应头，调用后请求线程立即返回，不能再访问 response
+     *
+     * @param path     文件的路径
+     * @param start    开始位置
+     * @param length   发送的长度
+     * @param request  HttpServletRequest 对象
+     * @param response HttpServletResponse 对象
+     * @throws IOException 打开文件失败时抛出异常
+     */
+    public void send(String path, long start, long length, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+
+        try {
+            AsyncContext async = request.startAsync(request, response);
+            async.setTimeout(0); // 只使用空闲超时
+
+            Transfer transfer = new Transfer(async, channel, response.getOutputStream(), start, length);
+            activeCount.incrementAndGet();
+            transfers.add(transfer);
+            async.addListener(transfer);
+            transfer.output.setWriteListener(transfer);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * 结束超过 app.file.async.timeout 没有写出数据的发送
+     */
+    private void checkIdle() {
+        long idleBefore = System.currentTimeMillis() - config.getFileAsyncTimeout();
+
+        for (Transfer transfer : transfers) {
+            if (transfer.lastWriteAt < idleBefore) {
+                log.warn("[异步发送文件] 空闲超时，还剩 {} 字节没有发送", transfer.remaining);
+                transfer.finish(false);
+            }
+        }
+    }
+
+    /**
+     * 一个文件的发送
+     */
+    private final class Transfer implements WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final FileChannel channel;
+        private final ServletOutputStream output;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private long position;
+        private volatile long remaining;
+        private volatile long lastWriteAt = System.currentTimeMillis(); // 最后一次写出数据的时间，用于空闲超时
+
+        Transfer(AsyncContext async, FileChannel channel, ServletOutputStream output, long start, long length) {
+            this.async   = async;
+            this.channel = channel;
+            this.output  = output;
+            this.position  = start;
+            this.remaining = length;
+        }
+
+        /**
+         * socket 可写时在 IO 线程池中读取文件并写出，容器线程立即返回
+         */
+        @Override
+        public void onWritePossible() {
+            ioExecutor.execute(this::pump);
+        }
+
+        /**
+         * 一直写到发送缓冲区满 (isReady() 返回 false，容器会在可写时再次调用 onWritePossible) 或者写完
+         */
+        private synchronized void pump() {
+            try {
+                while (!finished.get() && output.isReady()) {
+                    if (remaining <= 0) {
+                        finish(true);
+                        return;
+                    }
+
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    int read = channel.read(chunk, position);
+
+                    if (read < 0) {
+                        throw new IOException("文件被截断");
+                    }
+
+                    output.write(buffer, 0, read);
+                    position  += read;
+                    remaining -= read;
+                    lastWriteAt = System.currentTimeMillis();
+                    sentBytes.add(read);
+                }
+            } catch (IOException | RuntimeException ex) {
+                onError(ex);
+            }
+        }
+
+        @Override
+        public void onError(Throwable ex) {
+            log.debug("[异步发送文件] 发送失败: {}", ex.getMessage());
+            finish(false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            log.warn("[异步发送文件] 超时，还剩 {} 字节没有发送", remaining);
+            finish(false);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            onError(event.getThrowable());
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            finish(false);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        /**
+         * 关闭文件并结束请求，只执行一次
+         */
+        private void finish(boolean success) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+
+            activeCount.decrementAndGet();
+            transfers.remove(this);
+            (success ? completedCount : failedCount).increment();
+
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+            }
+
+            try {
+                async.complete();
+            } catch (IllegalStateException ignore) {
+                // 超时或者出错时容器已经结束了请求
+            }
+        }
+    }
+
+    /**
+     * 获取正在发送的文件数
+     *
+     * @return 返回文件数
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * 获取发送完成的文件数
+     *
+     * @return 返回文件数
+     */
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    /**
+     * 获取超时、出错或者客户端断开的文件数
+     *
+     * @return 返回文件数
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 获取发送的字节数
+     *
+     * @return 返回字节数
+     */
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+}
@@ -2,6 +2,7 @@ package com.xtuer.service;
 
 import com.github.wujun234.uid.impl.CachedUidGenerator;
 import com.xtuer.config.AppConfig;
+import com.xtuer.util.SnowflakeIdCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -10,6 +11,9 @@ public class BaseService {
     @Autowired
     private CachedUidGenerator uidGenerator;
 
+    @Autowired(required = false)
+    private WorkerIdLeaseService leaseService;
+
     @Autowired
     protected UserService userService;
 
@@ -22,12 +26,47 @@ public class BaseService {
     @Autowired
     protected AppConfig config;
 
+    @Autowired
+    protected SnowflakeIdCodec idCodec;
+
     /**
      * 生成唯一的 64 位 long 的 ID
      *
      * @return 返回唯一 ID
      */
     final public long nextId() {
+        checkWorkerLease();
         return uidGenerator.getUID();
     }
+
+    /**
+     * 一次生成 count 个唯一的 64 位 long 的 ID，批量导入数据时使用
+     * (CachedUidGenerator 从预先填充好的 RingBuffer 中取 ID，循环获取的开销很小)
+     *
+     * @param count ID 的数量
+     * @return 返回 ID 的数组
+     */
+    final public long[] nextIds(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException(String.format("ID count can't be less than 0: %d", count));
+        }
+
+        checkWorkerLease();
+        long[] ids = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            ids[i] = uidGenerator.getUID();
+        }
+
+        return ids;
+    }
+
+    /**
+     * 机器 ID 的租约被其他节点回收或者已经过期时拒绝生成 ID，避免两个节点使用同一个机器 ID 生成重复的 ID
+     */
+    private void checkWorkerLease() {
+        if (leaseService != null && !leaseService.isLeaseValid()) {
+            throw new IllegalStateException(String.format("Worker ID %d lease is lost or expired. Refusing to generate id", leaseService.getWorkerId()));
+        }
+    }
 }
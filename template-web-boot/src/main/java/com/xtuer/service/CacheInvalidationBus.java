@@ -0,0 +1,22 @@
+package com.xtuer.service;
+
+import java.util.function.Consumer;
+
+/**
+ * 缓存失效消息的广播通道，一个节点发布的消息所有节点 (包括自己) 都会收到
+ */
+public interface CacheInvalidationBus {
+    /**
+     * 发布消息给所有节点
+     *
+     * @param message 消息
+     */
+    void publish(String message);
+
+    /**
+     * 订阅消息，收到消息时调用 listener
+     *
+     * @param listener 消息的监听器
+     */
+    void subscribe(Consumer<String> listener);
+}
@@ -0,0 +1,121 @@
+package com.xtuer.service;
+
+import com.alicp.jetcache.Cache;
+import com.alicp.jetcache.MultiLevelCache;
+import com.alicp.jetcache.ProxyCache;
+import com.alicp.jetcache.anno.CachePenetrationProtect;
+import com.alicp.jetcache.anno.CacheRefresh;
+import com.alicp.jetcache.anno.CacheType;
+import com.alicp.jetcache.anno.CreateCache;
+import com.xtuer.bean.CacheConst;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 跨节点的缓存失效: CacheConst.CACHE 使用本地 + Redis 两级缓存 (CacheType.BOTH)，
+ * 只删除当前节点的缓存时，其他节点的本地缓存在过期前会一直返回旧数据。
+ *
+ * 修改数据后调用 invalidate(key):
+ *     1. 删除当前节点的本地缓存和 Redis 中的缓存
+ *     2. 通过 CacheInvalidationBus 广播 key，其他节点收到后只删除自己的本地缓存，下次访问时从 Redis 或数据库加载
+ * 先删除 Redis 再广播，其他节点重新加载时不会从 Redis 读到旧数据。
+ * 这样本地缓存可以使用很长的有效期 (jetcache.local.default.expireAfterWriteInMillis)，数据修改后几乎立即在所有节点生效。
+ *
+ * JetCache 中同名的缓存是同一个实例，使用 @CreateCache 得到 @Cached 使用的缓存，再从中取出本地缓存的那一级。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class CacheInvalidationService {
+    private final String nodeId = UUID.randomUUID().toString().replace("-", ""); // 区分消息是否当前节点发出的
+    private final CacheInvalidationBus bus;
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder receivedCount  = new LongAdder();
+
+    // 和 @Cached 方法的配置相同 (同名的缓存使用第一个访问它的配置创建)
+    @CreateCache(name = CacheConst.CACHE, cacheType = CacheType.BOTH)
+    @CachePenetrationProtect
+    @CacheRefresh(refresh = CacheConst.REFRESH_SECONDS, stopRefreshAfterLastAccess = CacheConst.STOP_REFRESH_AFTER_LAST_ACCESS_SECONDS)
+    private Cache<String, Object> cache;
+
+    public CacheInvalidationService(CacheInvalidationBus bus) {
+        this.bus = bus;
+    }
+
+    @PostConstruct
+    public void start() {
+        bus.subscribe(this::onMessage);
+    }
+
+    /**
+     * 删除当前节点的缓存 (本地和 Redis)，然后通知其他节点删除它们的本地缓存
+     *
+     * @param key 缓存的 key，例如 CacheConst.PREFIX_USER + userId
+     */
+    public void invalidate(String key) {
+        cache.remove(key);
+
+        try {
+            bus.publish(nodeId + " " + key);
+            publishedCount.increment();
+        } catch (RuntimeException ex) {
+            // 广播失败时其他节点的本地缓存在过期后恢复一致
+            log.warn("[缓存失效] 广播 {} 失败: {}", key, ex.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他节点的消息时删除本地缓存，忽略自己发出的消息
+     */
+    private void onMessage(String message) {
+        int index = message.indexOf(' ');
+
+        if (index <= 0 || message.startsWith(nodeId + " ")) {
+            return;
+        }
+
+        receivedCount.increment();
+        localCache().remove(message.substring(index + 1));
+    }
+
+    /**
+     * 获取两级缓存中的本地缓存，取不到时 (例如不是两级缓存) 返回整个缓存
+     */
+    @SuppressWarnings("unchecked")
+    private Cache<String, Object> localCache() {
+        Cache<String, Object> target = cache;
+
+        while (target instanceof ProxyCache) {
+            target = ((ProxyCache<String, Object>) target).getTargetCache();
+        }
+
+        if (target instanceof MultiLevelCache) {
+            return ((MultiLevelCache<String, Object>) target).caches()[0];
+        }
+
+        return target;
+    }
+
+    /**
+     * 获取广播的失效消息数
+     *
+     * @return 返回消息数
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * 获取收到的其他节点的失效消息数
+     *
+     * @return 返回消息数
+     */
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+}
@@ -0,0 +1,220 @@
+package com.xtuer.service;
+
+import com.xtuer.bean.Mime;
+import com.xtuer.config.AppConfig;
+import com.xtuer.util.ResponseUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <pre>
+ * 文本文件 (Mime.isPlainTextFile) 的压缩: 根据请求的 Accept-Encoding 选择发送原文件还是压缩后的文件。
+ *     1. 小于 app.file.compress.minSize 字节的文件不压缩 (压缩后节省很少，还增加了 CPU 消耗)
+ *     2. 浏览器支持 br 并且文件旁边有预先压缩好的 {文件名}.br 时发送 br (JDK 不支持 brotli 压缩，只使用部署时生成的文件)
+ *     3. 浏览器支持 gzip 时发送 {文件名}.gz，第一次访问时生成，原文件修改后重新生成，
+ *        大于 app.file.compress.maxSize 字节的文件不在请求中生成，只使用部署时预先压缩好的 .gz
+ *     4. 压缩后比原文件小不到 10% 时 (例如内容已经是压缩过的) 发送原文件
+ * 压缩后的文件保存在原文件旁边，删除仓库文件时一起删除。文本文件的响应都设置 Vary: Accept-Encoding，代理服务器按压缩格式分别缓存。
+ *
+ * 统计数据: 生成的压缩文件数、发送压缩文件的次数、节省的字节数。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class CompressedFileService {
+    /** 压缩后的文件的后缀 */
+    public static final String[] EXTENSIONS = { ".gz", ".br" };
+
+    private final AppConfig config;
+    private final Object[] locks = new Object[64]; // 分段锁: 同一个文件同时只有一个线程压缩，锁不删除，不会出现两个线程拿到不同的锁
+
+    private final LongAdder compressedCount = new LongAdder(); // 生成的压缩文件数
+    private final LongAdder servedCount     = new LongAdder(); // 发送压缩文件的次数
+    private final LongAdder savedBytes      = new LongAdder(); // 发送压缩文件节省的字节数
+
+    public CompressedFileService(AppConfig config) {
+        this.config = config;
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 选择要发送的文件: 原文件或者压缩后的文件，使用压缩后的文件时设置 options 的 contentEncoding
+     *
+     * @param file    原文件
+     * @param options 读取文件到 response 的选项
+     * @param request HttpServletRequest 对象
+     * @return 返回要发送的文件
+     */
+    public File select(File file, ResponseUtils.Options options, HttpServletRequest request) {
+        if (!config.isFileCompressEnabled() || !Mime.isPlainTextFile(file.getName()) || !file.isFile()) {
+            return file;
+        }
+
+        options.setVaryAcceptEncoding(true);
+
+        if (file.length() < config.getFileCompressMinSize()) {
+            return file;
+        }
+
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+
+        // [2] 预先压缩好的 br
+        if (accepts(acceptEncoding, "br")) {
+            File br = new File(file.getPath() + ".br");
+
+            if (isFresh(br, file) && isSmaller(br, file)) {
+                return served(file, br, "br", options);
+            }
+        }
+
+        // [3] gzip，第一次访问时生成
+        if (accepts(acceptEncoding, "gzip")) {
+            try {
+                File gz = gzip(file);
+
+                if (gz != null && isSmaller(gz, file)) {
+                    return served(file, gz, "gzip", options);
+                }
+            } catch (IOException ex) {
+                log.warn("[压缩文件] 压缩 {} 失败: {}", file.getAbsolutePath(), ex.getMessage());
+            }
+        }
+
+        return file;
+    }
+
+    /**
+     * 生成文件的 gzip 压缩文件 {文件名}.gz，已经存在并且比原文件新时直接返回，
+     * 原文件大于 app.file.compress.maxSize 时不生成 (第一次访问的请求会被长时间阻塞)，返回 null
+     */
+    private File gzip(File file) throws IOException {
+        File gz = new File(file.getPath() + ".gz");
+
+        if (isFresh(gz, file)) {
+            return gz;
+        }
+        if (file.length() > config.getFileCompressMaxSize()) {
+            return null;
+        }
+
+        synchronized (locks[(file.getPath().hashCode() & 0x7FFFFFFF) % locks.length]) {
+            if (isFresh(gz, file)) {
+                return gz;
+            }
+
+            // 先写到临时文件再重命名，其他线程不会读到写了一半的文件，失败时删除临时文件
+            File temp = new File(gz.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+
+            try {
+                try (OutputStream output = new GZIPOutputStream(new FileOutputStream(temp), 65536) {
+                    { def.setLevel(Deflater.BEST_COMPRESSION); }
+                }) {
+                    Files.copy(file.toPath(), output);
+                }
+
+                Files.move(temp.toPath(), gz.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+            compressedCount.increment();
+            log.info("[压缩文件] {}: {} 字节压缩为 {} 字节", file.getAbsolutePath(), file.length(), gz.length());
+
+            return gz;
+        }
+    }
+
+    private File served(File file, File compressed, String encoding, ResponseUtils.Options options) {
+        options.setContentEncoding(encoding);
+        servedCount.increment();
+        savedBytes.add(file.length() - compressed.length());
+
+        return compressed;
+    }
+
+    /**
+     * 压缩文件存在并且不比原文件旧
+     */
+    private static boolean isFresh(File compressed, File file) {
+        return compressed.isFile() && compressed.lastModified() >= file.lastModified();
+    }
+
+    /**
+     * 压缩后至少比原文件小 10%
+     */
+    private static boolean isSmaller(File compressed, File file) {
+        return compressed.length() <= file.length() * 0.9;
+    }
+
+    /**
+     * 判断 Accept-Encoding 是否接受 encoding，例如 "gzip, deflate, br" 接受 gzip，"gzip;q=0" 不接受 gzip
+     *
+     * @param acceptEncoding 请求头 Accept-Encoding
+     * @param encoding       压缩格式
+     * @return 接受时返回 true，否则返回 false
+     */
+    private static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split("\\s*;\\s*");
+            String name = tokens[0];
+
+            if (!name.equalsIgnoreCase(encoding) && !"*".equals(name)) {
+                continue;
+            }
+
+            for (int i = 1; i < tokens.length; i++) {
+                if (tokens[i].matches("q=0(\\.0*)?")) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * 获取生成的压缩文件数
+     *
+     * @return 返回文件数
+     */
+    public long getCompressedCount() {
+        return compressedCount.sum();
+    }
+
+    /**
+     * 获取发送压缩文件的次数
+     *
+     * @return 返回次数
+     */
+    public long getServedCount() {
+        return servedCount.sum();
+    }
+
+    /**
+     * 获取发送压缩文件节省的字节数
+     *
+     * @return 返回字节数
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+}
@@ -0,0 +1,31 @@
+package com.xtuer.service;
+
+import com.github.wujun234.uid.worker.WorkerIdAssigner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * CachedUidGenerator 使用 WorkerIdLeaseService 申请到的机器 ID，替换 uid-generator 默认的 DisposableWorkerIdAssigner
+ * (每次启动都在表 WORKER_NODE 中插入一行得到新的机器 ID)，只在 app.workerLease.enabled 为 true 时启用。
+ * 租约失效后 BaseService.nextId() 拒绝生成 ID (fencing)。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.workerLease.enabled", havingValue = "true")
+public class LeasedWorkerIdAssigner implements WorkerIdAssigner {
+    private final WorkerIdLeaseService leaseService;
+
+    /**
+     * @param leaseService 机器 ID 租约服务，启动时 (@PostConstruct) 已经申请到机器 ID
+     */
+    public LeasedWorkerIdAssigner(WorkerIdLeaseService leaseService) {
+        this.leaseService = leaseService;
+    }
+
+    @Override
+    public long assignWorkerId() {
+        log.info("CachedUidGenerator uses leased worker ID {}", leaseService.getWorkerId());
+        return leaseService.getWorkerId();
+    }
+}
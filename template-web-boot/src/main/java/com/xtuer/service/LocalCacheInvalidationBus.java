@@ -0,0 +1,22 @@
+package com.xtuer.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的广播通道，发布时同步调用所有的监听器，单节点部署和测试时代替 Redis 使用 (多个 CacheInvalidationService 共享一个实例模拟多个节点)
+ */
+public class LocalCacheInvalidationBus implements CacheInvalidationBus {
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(String message) {
+        listeners.forEach(listener -> listener.accept(message));
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+}
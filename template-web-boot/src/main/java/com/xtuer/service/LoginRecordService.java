@@ -0,0 +1,243 @@
+package com.xtuer.service;
+
+import com.xtuer.bean.UserLoginRecord;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 延迟批量写入用户的登录记录 (write-behind)，登录时只把记录放入内存队列，不占用数据库连接:
+ *     1. 登录记录放入有界队列，队列满时最多等待 app.loginRecord.offerTimeout 毫秒 (背压)，仍然满则丢弃此记录
+ *     2. 后台线程从队列中取出记录，攒够 app.loginRecord.batchSize 条或者距离第一条记录超过 app.loginRecord.flushInterval 毫秒时，
+ *        使用一条多行的 INSERT 语句写入数据库
+ *     3. 关闭时停止接收新的记录，把队列中剩余的记录都写入数据库
+ * 写入数据库失败的记录会被丢弃 (登录记录用于审计统计，不影响业务)。
+ *
+ * 统计数据: 队列长度、放入/丢弃/写入/失败的记录数、写入次数、写入的平均和最大耗时。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class LoginRecordService {
+    private final UserMapper userMapper;
+    private final AppConfig config;
+    private final BlockingQueue<UserLoginRecord> queue;
+
+    private final LongAdder  enqueuedCount = new LongAdder(); // 放入队列的记录数
+    private final LongAdder  droppedCount  = new LongAdder(); // 队列满时丢弃的记录数
+    private final LongAdder  flushedCount  = new LongAdder(); // 写入数据库的记录数
+    private final LongAdder  failedCount   = new LongAdder(); // 写入数据库失败的记录数
+    private final LongAdder  flushTimes    = new LongAdder(); // 写入数据库的次数
+    private final LongAdder  flushNanos    = new LongAdder(); // 写入数据库的总耗时
+    private final AtomicLong maxFlushNanos = new AtomicLong(); // 写入数据库的最大耗时
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public LoginRecordService(UserMapper userMapper, AppConfig config) {
+        this.userMapper = userMapper;
+        this.config = config;
+        this.queue  = new ArrayBlockingQueue<>(config.getLoginRecordQueueSize());
+    }
+
+    /**
+     * 启动后台写入数据库的线程
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::flushLoop, "login-record-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 关闭时停止接收新的记录，等待队列中剩余的记录写入数据库
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+
+        if (flusher != null) {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        log.info("[登录记录] 关闭，写入 {} 条，丢弃 {} 条，失败 {} 条，剩余 {} 条",
+                getFlushedCount(), getDroppedCount(), getFailedCount(), queue.size());
+    }
+
+    /**
+     * 添加用户的登录记录，队列满时最多等待 offerTimeout 毫秒，仍然满则丢弃
+     *
+     * @param userId   用户 ID
+     * @param username 账号
+     * @return 放入队列返回 true，丢弃返回 false
+     */
+    public boolean addLoginRecord(long userId, String username) {
+        UserLoginRecord record = new UserLoginRecord(userId, username);
+        boolean accepted = false;
+
+        if (running) {
+            try {
+                accepted = queue.offer(record, config.getLoginRecordOfferTimeout(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (accepted) {
+            enqueuedCount.increment();
+        } else {
+            droppedCount.increment();
+            log.warn("[登录记录] 队列已满，丢弃登录记录: {}", record);
+        }
+
+        return accepted;
+    }
+
+    /**
+     * 后台线程: 攒够一批记录或者超时后写入数据库，关闭后把队列中剩余的记录写完再退出
+     */
+    private void flushLoop() {
+        int  batchSize = config.getLoginRecordBatchSize();
+        long interval  = config.getLoginRecordFlushInterval();
+        List<UserLoginRecord> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                // [1] 等待第一条记录
+                UserLoginRecord first = queue.poll(interval, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                // [2] 从第一条记录开始计时，攒够 batchSize 条或者超时则写入数据库
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval);
+
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+
+                    UserLoginRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                // 被中断时写完已取出的记录，然后继续把队列写完
+                running = false;
+            }
+
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 使用一条多行的 INSERT 语句写入数据库
+     */
+    private void flush(List<UserLoginRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            userMapper.insertUserLoginRecords(batch);
+            flushedCount.add(batch.size());
+        } catch (RuntimeException ex) {
+            failedCount.add(batch.size());
+            log.warn("[登录记录] 写入 {} 条登录记录失败: {}", batch.size(), ex.getMessage());
+        }
+
+        long elapsed = System.nanoTime() - start;
+        flushTimes.increment();
+        flushNanos.add(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    /**
+     * 获取队列中等待写入的记录数
+     *
+     * @return 返回队列长度
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * 获取放入队列的记录数
+     *
+     * @return 返回记录数
+     */
+    public long getEnqueuedCount() {
+        return enqueuedCount.sum();
+    }
+
+    /**
+     * 获取队列满时丢弃的记录数
+     *
+     * @return 返回记录数
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 获取写入数据库的记录数
+     *
+     * @return 返回记录数
+     */
+    public long getFlushedCount() {
+        return flushedCount.sum();
+    }
+
+    /**
+     * 获取写入数据库失败的记录数
+     *
+     * @return 返回记录数
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 获取写入数据库的平均耗时
+     *
+     * @return 返回平均耗时，单位毫秒
+     */
+    public double getAverageFlushMillis() {
+        long times = flushTimes.sum();
+        return times == 0 ? 0 : flushNanos.sum() / 1_000_000.0 / times;
+    }
+
+    /**
+     * 获取写入数据库的最大耗时
+     *
+     * @return 返回最大耗时，单位毫秒
+     */
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+}
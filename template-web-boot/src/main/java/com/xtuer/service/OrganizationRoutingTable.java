@@ -0,0 +1,184 @@
+package com.xtuer.service;
+
+import com.xtuer.bean.CacheConst;
+import com.xtuer.bean.Organization;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.OrganizationMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 域名到机构的路由表: 机构表很小，在内存中保存所有机构，每个请求查找当前机构时只读一次 Map，不访问 Redis 和数据库。
+ *     1. 启动时加载所有的机构
+ *     2. 每 app.orgRouting.pollInterval 毫秒查询一次机构表的版本 (机构数 + 最大的 updated_at)，版本变化时重新加载
+ *     3. 当前节点修改机构后调用 refresh() 立即重新加载，其他节点收到 CacheInvalidationBus 中机构的失效消息后也立即重新加载
+ * 重新加载时创建新的 Map 再整体替换，读取时不需要加锁。
+ * 加载失败时 (例如启动时数据库不可用) isReady() 返回 false，调用者使用缓存查询机构。
+ *
+ * 路由表包含所有的机构，找不到的域名 (爬虫、扫描器、错误解析到本站的域名) 直接返回 null，
+ * 不访问缓存和数据库，作用和已知域名的 Bloom Filter 相同，并且没有误判。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class OrganizationRoutingTable {
+    private final OrganizationMapper orgMapper;
+    private final CacheInvalidationBus bus;
+    private final AppConfig config;
+    private final LongAdder reloadCount  = new LongAdder(); // 重新加载的次数
+    private final LongAdder unknownCount = new LongAdder(); // 查找未知域名的次数
+
+    private volatile Map<String, Organization> routes; // key 为机构的域名，为 null 表示还没有加载成功
+    private volatile String version;                   // 加载时机构表的版本
+    private ScheduledExecutorService pollExecutor;
+
+    public OrganizationRoutingTable(OrganizationMapper orgMapper, CacheInvalidationBus bus, AppConfig config) {
+        this.orgMapper = orgMapper;
+        this.bus = bus;
+        this.config = config;
+    }
+
+    /**
+     * 启动时加载所有机构，订阅机构的失效消息，并开始定时检查机构表的版本
+     */
+    @PostConstruct
+    public void start() {
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            log.warn("[机构路由] 加载机构失败，稍后重试: {}", ex.getMessage());
+        }
+
+        bus.subscribe(this::onMessage);
+
+        long interval = Math.max(1, config.getOrgRoutingPollInterval());
+        pollExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "org-routing-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pollExecutor.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pollExecutor != null) {
+            pollExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 查找域名所属的机构
+     *
+     * @param host 机构的域名
+     * @return 返回域名所属的机构，找不到返回 null
+     */
+    public Organization findOrganization(String host) {
+        Map<String, Organization> current = routes;
+        Organization org = (current == null || host == null) ? null : current.get(host);
+
+        if (org == null && current != null) {
+            unknownCount.increment();
+        }
+
+        return org;
+    }
+
+    /**
+     * 路由表是否已经加载成功，没有加载成功时 findOrganization() 总是返回 null
+     *
+     * @return 加载成功返回 true，否则返回 false
+     */
+    public boolean isReady() {
+        return routes != null;
+    }
+
+    /**
+     * 从数据库重新加载所有机构，先查询版本再加载机构，加载期间机构被修改时下次检查会再次加载
+     */
+    public synchronized void refresh() {
+        String latestVersion = orgMapper.findOrganizationsVersion();
+        List<Organization> orgs = orgMapper.findAllOrganizations();
+        Map<String, Organization> latest = new HashMap<>(Math.max(16, orgs.size() * 2));
+
+        for (Organization org : orgs) {
+            if (org.getHost() != null) {
+                latest.put(org.getHost(), org);
+            }
+        }
+
+        routes  = Collections.unmodifiableMap(latest);
+        version = latestVersion;
+        reloadCount.increment();
+        log.info("[机构路由] 加载 {} 个机构，版本 {}", latest.size(), latestVersion);
+    }
+
+    /**
+     * 定时任务: 机构表的版本变化时重新加载 (异常不能抛出，否则定时任务会停止)
+     */
+    private void poll() {
+        try {
+            if (routes == null || !Objects.equals(version, orgMapper.findOrganizationsVersion())) {
+                refresh();
+            }
+        } catch (RuntimeException ex) {
+            log.warn("[机构路由] 检查机构表失败: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * 收到机构的失效消息 (格式为 "nodeId key") 时重新加载
+     */
+    private void onMessage(String message) {
+        int index = message.indexOf(' ');
+
+        if (index > 0 && message.startsWith(CacheConst.PREFIX_ORG, index + 1)) {
+            try {
+                refresh();
+            } catch (RuntimeException ex) {
+                log.warn("[机构路由] 重新加载机构失败: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取路由表中的机构数
+     *
+     * @return 返回机构数
+     */
+    public int size() {
+        Map<String, Organization> current = routes;
+        return current == null ? 0 : current.size();
+    }
+
+    /**
+     * 获取重新加载的次数
+     *
+     * @return 返回次数
+     */
+    public long getReloadCount() {
+        return reloadCount.sum();
+    }
+
+    /**
+     * 获取查找未知域名的次数 (在内存中拒绝，没有访问缓存和数据库)
+     *
+     * @return 返回次数
+     */
+    public long getUnknownCount() {
+        return unknownCount.sum();
+    }
+}
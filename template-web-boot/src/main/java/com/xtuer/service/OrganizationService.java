@@ -1,9 +1,14 @@
 package com.xtuer.service;
 
-import com.alicp.jetcache.anno.CacheInvalidate;
+import com.alicp.jetcache.Cache;
+import com.alicp.jetcache.anno.CachePenetrationProtect;
+import com.alicp.jetcache.anno.CacheRefresh;
+import com.alicp.jetcache.anno.CacheType;
 import com.alicp.jetcache.anno.Cached;
+import com.alicp.jetcache.anno.CreateCache;
 import com.xtuer.bean.*;
 import com.xtuer.mapper.OrganizationMapper;
+import com.xtuer.util.RequestContext;
 import com.xtuer.util.Utils;
 import com.xtuer.util.WebUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -11,6 +16,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
 /**
  * 机构的服务 (机构会使用域名作为 key 缓存到 Redis 中)
  */
@@ -22,16 +33,50 @@ public class OrganizationService extends BaseService {
     @Autowired
     private OrganizationService self;
 
+    @Autowired
+    private CacheInvalidationService cacheInvalidationService;
+
+    @Autowired
+    private OrganizationRoutingTable routingTable;
+
+    // 找不到机构的域名缓存 30 秒，避免错误的 Host 每次都查询 Redis 和数据库
+    @CreateCache(name = CacheConst.CACHE_UNKNOWN_HOST, cacheType = CacheType.LOCAL, expire = 30, localLimit = 10000)
+    private Cache<String, Boolean> unknownHostCache;
+
+    private final LongAdder unknownHostRejectedCount = new LongAdder(); // 负缓存拒绝的查询次数
+
     /**
-     * 获取当前请求使用的域名所属机构
+     * 获取当前请求使用的域名所属机构，一次请求中只查找一次
      *
      * @return 返回域名所属的机构，如果找不到则返回 null
      */
     public Organization getCurrentOrganization() {
-        // 先从缓存里查找机构，如果缓存里没有，再从数据库加载
+        return RequestContext.get(RequestContext.ORGANIZATION, this::findCurrentOrganization);
+    }
+
+    /**
+     * 查找当前请求使用的域名所属机构
+     */
+    private Organization findCurrentOrganization() {
+        // 从内存中的路由表查找机构，路由表还没有加载成功时从缓存里查找
         String host = WebUtils.getHost();
+
+        if (routingTable.isReady()) {
+            return routingTable.findOrganization(host);
+        }
+
+        // 最近找不到机构的域名直接返回 null
+        if (host == null || unknownHostCache.get(host) != null) {
+            unknownHostRejectedCount.increment();
+            return null;
+        }
+
         Organization org = self.findOrganizationByHost(host);
 
+        if (org == null) {
+            unknownHostCache.put(host, Boolean.TRUE);
+        }
+
         return org;
     }
 
@@ -57,21 +102,62 @@ public class OrganizationService extends BaseService {
         Organization org = orgMapper.findOrganizationById(orgId);
 
         if (org != null) {
-            User admin = userService.findUser(org.getAdminId());
-            org.setAdmin(admin);
+            fillAdmins(Collections.singletonList(org));
         }
 
         return org;
     }
 
+    /**
+     * 使用机构名称模糊查询查询机构 (偏移分页)，同时会查询出机构的管理员
+     *
+     * @param name 机构名 (部分)
+     * @param page 分页对象
+     * @return 返回机构列表
+     */
+    public List<Organization> findOrganizations(String name, Page page) {
+        return fillAdmins(orgMapper.findOrganizationsLikeName(name, page));
+    }
+
+    /**
+     * 使用机构名称模糊查询查询机构 (游标分页)，同时会查询出机构的管理员
+     *
+     * @param name 机构名 (部分)
+     * @param page 游标分页的分页对象
+     * @return 返回这一页的机构和下一页的游标
+     */
+    public CursorPage<Organization> findOrganizationsAfter(String name, Page page) {
+        List<Organization> orgs = fillAdmins(orgMapper.findOrganizationsLikeNameAfter(name, page));
+        return CursorPage.of(orgs, page, Organization::getOrgId);
+    }
+
+    /**
+     * 设置机构的管理员，所有机构的管理员使用 userService.findUsers() 一次批量查询
+     *
+     * @param orgs 机构
+     * @return 返回传入的机构
+     */
+    private List<Organization> fillAdmins(List<Organization> orgs) {
+        List<Long> adminIds = orgs.stream().map(Organization::getAdminId).collect(Collectors.toList());
+        Map<Long, User> admins = userService.findUsers(adminIds);
+
+        for (Organization org : orgs) {
+            org.setAdmin(admins.get(org.getAdminId()));
+        }
+
+        return orgs;
+    }
+
     /**
      * 查找域名所属的机构
-     * 先从缓存里查找机构，如果缓存里没有，再从数据库加载
+     * 先从缓存里查找机构，如果缓存里没有，再从数据库加载 (同一个域名并发加载时只有一个线程查询数据库，其他线程等待结果)
      *
      * @param host 机构的域名
      * @return 返回域名所属机构
      */
-    @Cached(name = CacheConst.CACHE, key = CacheConst.KEY_ORG_HOST)
+    @Cached(name = CacheConst.CACHE, key = CacheConst.KEY_ORG_HOST, cacheType = CacheType.BOTH)
+    @CachePenetrationProtect
+    @CacheRefresh(refresh = CacheConst.REFRESH_SECONDS, stopRefreshAfterLastAccess = CacheConst.STOP_REFRESH_AFTER_LAST_ACCESS_SECONDS)
     public Organization findOrganizationByHost(String host) {
         return orgMapper.findOrganizationByHost(host);
     }
@@ -164,12 +250,23 @@ public class OrganizationService extends BaseService {
     }
 
     /**
-     * 删除机构的缓存
+     * 删除所有节点缓存的机构，并重新加载当前节点的路由表 (其他节点收到失效消息后重新加载)
      *
      * @param host 机构 host
      */
-    @CacheInvalidate(name = CacheConst.CACHE, key = CacheConst.KEY_ORG_HOST)
     public void invalidateOrganizationCache(String host) {
+        cacheInvalidationService.invalidate(CacheConst.PREFIX_ORG + host);
+        unknownHostCache.remove(host);
+        routingTable.refresh();
+        RequestContext.remove(RequestContext.ORGANIZATION);
+    }
 
+    /**
+     * 获取未知域名被拒绝的次数: 路由表中找不到的次数 + 路由表未加载时负缓存命中的次数
+     *
+     * @return 返回次数
+     */
+    public long getUnknownHostRejectedCount() {
+        return routingTable.getUnknownCount() + unknownHostRejectedCount.sum();
     }
 }
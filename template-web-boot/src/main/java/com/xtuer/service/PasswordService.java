@@ -0,0 +1,251 @@
+package com.xtuer.service;
+
+import com.xtuer.config.AppConfig;
+import com.xtuer.exception.ApplicationException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <pre>
+ * 密码加密和校验的服务，BCrypt 故意设计为很耗 CPU，登录高峰时如果在 Tomcat 的线程中直接计算，
+ * 所有 Tomcat 线程都会被占用，其他的请求得不到处理。所以 BCrypt 的计算都在专用的线程池中执行:
+ *     1. 线程数固定为 app.password.threads，限制 BCrypt 同时占用的 CPU
+ *     2. 等待队列的长度为 app.password.queueSize，队列满时立即失败，返回 "服务器繁忙"
+ *     3. 请求线程最多等待 app.password.waitTimeout 毫秒，超时也返回 "服务器繁忙"
+ * 失败时抛出 ApplicationException，code 为 BUSY_CODE，统一的异常处理返回 Result.fail("服务器繁忙，请稍后再试", BUSY_CODE)。
+ *
+ * 加密使用的 cost 为 app.password.cost，修改 cost 后，用户登录时密码会自动使用新的 cost 重新加密 (见 needsRehash)。
+ * 按 cost 统计 BCrypt 的次数和耗时，用于调整 cost 和线程数。
+ *
+ * 实现了 PasswordEncoder，Spring Security 的表单登录也使用此服务校验密码 (见 LoginPasswordEncoder)，密码带前缀 {bcrypt}，和 Utils.passwordByBCrypt() 兼容。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class PasswordService implements PasswordEncoder {
+    /** 服务器繁忙的错误代码 */
+    public static final int BUSY_CODE = 503;
+
+    private static final String PREFIX = "{bcrypt}";
+    private static final Pattern COST_PATTERN = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final AppConfig config;
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Map<Integer, CostStats> stats = new ConcurrentHashMap<>();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public PasswordService(AppConfig config) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.config   = config;
+        this.encoder  = new BCryptPasswordEncoder(config.getPasswordCost());
+        this.executor = new ThreadPoolExecutor(config.getPasswordThreads(), config.getPasswordThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getPasswordQueueSize()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 使用 BCrypt 加密密码
+     *
+     * @param rawPassword 原始密码
+     * @return 返回加密后的密码 (带前缀 {bcrypt})
+     * @throws ApplicationException 服务器繁忙时抛出异常
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        int cost = config.getPasswordCost();
+        return PREFIX + execute(cost, () -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * 在调用者的线程中使用 BCrypt 加密密码，用于批量导入等后台任务自己控制并发，不占用登录使用的线程池
+     *
+     * @param rawPassword 原始密码
+     * @return 返回加密后的密码 (带前缀 {bcrypt})
+     */
+    public String encodeInCaller(CharSequence rawPassword) {
+        long start = System.nanoTime();
+
+        try {
+            return PREFIX + encoder.encode(rawPassword);
+        } finally {
+            record(config.getPasswordCost(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 校验密码是否正确
+     *
+     * @param rawPassword     原始密码
+     * @param encodedPassword 加密后的密码 (可以带前缀 {bcrypt})
+     * @return 密码正确返回 true，否则返回 false
+     * @throws ApplicationException 服务器繁忙时抛出异常
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+
+        String encoded = encodedPassword.startsWith(PREFIX) ? encodedPassword.substring(PREFIX.length()) : encodedPassword;
+        return execute(cost(encoded), () -> encoder.matches(rawPassword, encoded));
+    }
+
+    /**
+     * 判断密码是否需要使用当前配置的 cost 重新加密
+     *
+     * @param encodedPassword 加密后的密码
+     * @return 加密使用的 cost 和配置的不同时返回 true，否则返回 false
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+
+        String encoded = encodedPassword.startsWith(PREFIX) ? encodedPassword.substring(PREFIX.length()) : encodedPassword;
+        int cost = cost(encoded);
+
+        return cost > 0 && cost != config.getPasswordCost();
+    }
+
+    /**
+     * 在后台使用当前配置的 cost 重新加密密码，加密完成后调用 saver 保存，服务器繁忙时跳过 (下次登录时再重新加密)。
+     * 任务已经在线程池中执行，直接计算 BCrypt (encodeInCaller)，不能再调用 encode() 提交到同一个线程池等待，
+     * 否则同时重新加密的任务数达到线程数时，所有线程都在等待排队中不能执行的任务。
+     *
+     * @param rawPassword 原始密码
+     * @param saver       保存重新加密后的密码
+     */
+    public void rehashLater(String rawPassword, Consumer<String> saver) {
+        try {
+            executor.execute(() -> {
+                try {
+                    saver.accept(encodeInCaller(rawPassword));
+                } catch (RuntimeException ex) {
+                    log.warn("[密码] 重新加密密码失败: {}", ex.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejectedCount.increment();
+        }
+    }
+
+    /**
+     * 获取按 cost 统计的 BCrypt 次数和耗时
+     *
+     * @return 返回 cost -> 统计数据
+     */
+    public Map<Integer, CostStats> getStats() {
+        return new TreeMap<>(stats);
+    }
+
+    /**
+     * 获取因为服务器繁忙被拒绝的次数
+     *
+     * @return 返回拒绝的次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 在线程池中执行 BCrypt 计算，并记录耗时，队列满或者等待超时时抛出服务器繁忙的异常
+     */
+    private <T> T execute(int cost, Callable<T> task) {
+        Future<T> future;
+
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+
+                try {
+                    return task.call();
+                } finally {
+                    record(cost, System.nanoTime() - start);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            throw busy();
+        }
+
+        try {
+            return future.get(config.getPasswordWaitTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            throw busy();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    private void record(int cost, long elapsedNanos) {
+        stats.computeIfAbsent(cost, c -> new CostStats()).record(elapsedNanos);
+    }
+
+    private ApplicationException busy() {
+        rejectedCount.increment();
+        log.warn("[密码] 服务器繁忙，排队的任务数: {}", executor.getQueue().size());
+        return new ApplicationException("服务器繁忙，请稍后再试", BUSY_CODE);
+    }
+
+    /**
+     * 解析 BCrypt 密码中的 cost，例如 $2a$10$... 的 cost 为 10，无法解析时返回 0
+     */
+    private static int cost(String encoded) {
+        Matcher matcher = COST_PATTERN.matcher(encoded);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    /**
+     * 某个 cost 的 BCrypt 次数和耗时
+     */
+    @Getter
+    public static final class CostStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void record(long elapsedNanos) {
+            count.increment();
+            nanos.add(elapsedNanos);
+        }
+
+        /**
+         * 获取平均耗时
+         *
+         * @return 返回平均耗时，单位毫秒
+         */
+        public double getAverageMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : nanos.sum() / 1_000_000.0 / n;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.xtuer.service;
 
+import com.alicp.jetcache.anno.CachePenetrationProtect;
 import com.alicp.jetcache.anno.Cached;
 import com.xtuer.bean.User;
 import com.xtuer.mapper.UserMapper;
@@ -44,8 +45,9 @@ public class PerformanceTestService {
         return self.redis(RAND.nextInt(100_000)); // 缓存最多 10 万个数据
     }
 
-    // 测试 Redis 的处理能力
+    // 测试 Redis 的处理能力 (不提前刷新: 写性能测试会访问 10 万个 key，每个 key 都会创建后台刷新任务)
     @Cached(name = "cache-test:", key = "'pt-name-' + #ns")
+    @CachePenetrationProtect
     public String redis(int ns) {
         return "Performance Test: " + ns;
     }
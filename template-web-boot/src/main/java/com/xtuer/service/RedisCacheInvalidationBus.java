@@ -0,0 +1,96 @@
+package com.xtuer.service;
+
+import com.xtuer.bean.CacheConst;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * <pre>
+ * 使用 Redis 的 pub/sub 广播缓存失效消息，频道为 xtuer:cache-invalidation。
+ * 第一次订阅时启动后台线程监听频道，连接断开后每秒重连一次 (断开期间的消息会丢失，本地缓存最多在过期后恢复一致)。
+ * 使用 JetCache 的 Redis 连接池 (见 WebConfig.jedisPool)，订阅一直占用其中的一个连接。
+ * </pre>
+ */
+@Slf4j
+@Component
+public class RedisCacheInvalidationBus implements CacheInvalidationBus {
+    private static final String CHANNEL = CacheConst.CACHE + "cache-invalidation";
+
+    private final JedisPool pool;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+    private volatile JedisPubSub pubSub;
+    private Thread subscriber;
+
+    public RedisCacheInvalidationBus(JedisPool pool) {
+        this.pool = pool;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        JedisPubSub current = pubSub;
+
+        if (current != null && current.isSubscribed()) {
+            current.unsubscribe();
+        }
+    }
+
+    @Override
+    public void publish(String message) {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.publish(CHANNEL, message);
+        }
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+
+        if (subscriber == null) {
+            subscriber = new Thread(this::listen, "cache-invalidation-subscriber");
+            subscriber.setDaemon(true);
+            subscriber.start();
+        }
+    }
+
+    /**
+     * 后台线程: 订阅频道 (阻塞直到取消订阅或者连接断开)，断开后重连
+     */
+    private void listen() {
+        while (running) {
+            pubSub = new JedisPubSub() {
+                @Override
+                public void onMessage(String channel, String message) {
+                    listeners.forEach(listener -> listener.accept(message));
+                }
+            };
+
+            try (Jedis jedis = pool.getResource()) {
+                jedis.subscribe(pubSub, CHANNEL);
+            } catch (RuntimeException ex) {
+                if (running) {
+                    log.warn("[缓存失效] 订阅 Redis 频道 {} 失败，1 秒后重连: {}", CHANNEL, ex.getMessage());
+                    sleep();
+                }
+            }
+        }
+    }
+
+    private static void sleep() {
+        try {
+            TimeUnit.SECONDS.sleep(1);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -271,7 +271,7 @@ public class RepoFileService {
      * @param url  要被删除的文件的 URL，用于输出信息，可以为 null
      */
     public void deleteRepoFile(File file, String url) {
-        // 1. 删除文件
+        // 1. 删除文件和它压缩后的文件
         // 2. 删除文件记录
         if (file == null) {
             return;
@@ -280,6 +280,9 @@ public class RepoFileService {
         log.info("[开始] 删除仓库文件 {}，URL 为: {}", file.getAbsolutePath(), url);
 
         FileUtils.deleteQuietly(file);
+        for (String extension : CompressedFileService.EXTENSIONS) {
+            FileUtils.deleteQuietly(new File(file.getPath() + extension)); // 压缩后的文件
+        }
         fileMapper.deleteUploadedFileById(getFileId(file.getName()));
 
         log.info("[结束] 删除仓库文件 {}", file.getAbsolutePath());
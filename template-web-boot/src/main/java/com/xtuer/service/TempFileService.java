@@ -1,6 +1,7 @@
 package com.xtuer.service;
 
 import com.alibaba.fastjson.JSON;
+import com.xtuer.bean.Page;
 import com.xtuer.bean.UploadedFile;
 import com.xtuer.config.AppConfig;
 import com.xtuer.bean.Urls;
@@ -17,6 +18,9 @@ import org.springframework.web.multipart.MultipartFile;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 /**
  * <pre>
@@ -75,7 +79,52 @@ public class TempFileService extends BaseService {
      * @throws IOException 保存文件到临时目录出错时抛出 IO 异常
      */
     public UploadedFile uploadFileToTemp(MultipartFile file, long userId) throws IOException {
-        // 1. 为文件生成一个唯一 ID
+        return uploadFileToTemp(file, nextId(), userId);
+    }
+
+    /**
+     * 上传多个文件到临时目录，一次为所有文件生成 ID
+     *
+     * @param files  上传的文件
+     * @param userId 上传文件的用户 ID
+     * @return 返回上传的文件信息对象的数组，顺序和 files 相同
+     * @throws IOException 保存文件到临时目录出错时抛出 IO 异常
+     */
+    public List<UploadedFile> uploadFilesToTemp(List<MultipartFile> files, long userId) throws IOException {
+        long[] fileIds = nextIds(files.size());
+        List<UploadedFile> upFiles = new ArrayList<>(files.size());
+
+        for (int i = 0; i < fileIds.length; i++) {
+            upFiles.add(uploadFileToTemp(files.get(i), fileIds[i], userId));
+        }
+
+        return upFiles;
+    }
+
+    /**
+     * 查找上传时间在 [from, to) 之间的文件，按上传时间升序排列。
+     * 文件 ID 的高位是上传时间，把时间范围转换为 ID 的范围后使用主键进行范围查询，不需要上传时间的索引
+     *
+     * @param from 开始时间 (包含)
+     * @param to   结束时间 (不包含)
+     * @param page 分页对象
+     * @return 返回文件的列表
+     */
+    public List<UploadedFile> findUploadedFilesBetween(Date from, Date to, Page page) {
+        return fileMapper.findUploadedFilesByIdRange(idCodec.minId(from), idCodec.maxId(to), page);
+    }
+
+    /**
+     * 使用指定的文件 ID 上传文件到临时目录
+     *
+     * @param file   上传的文件
+     * @param fileId 文件的 ID
+     * @param userId 上传文件的用户 ID
+     * @return 返回上传的文件信息对象
+     * @throws IOException 保存文件到临时目录出错时抛出 IO 异常
+     */
+    private UploadedFile uploadFileToTemp(MultipartFile file, long fileId, long userId) throws IOException {
+        // 1. 为文件生成一个唯一 ID (由调用者传入)
         // 2. 获取原始文件后和缀名
         // 3. 临时文件名: 文件的 ID + 后缀名组合出上传保存的文件名，如 165694386577866752.png
         // 4. 计算保存的文件路径和 URL
@@ -84,7 +133,6 @@ public class TempFileService extends BaseService {
         // 7. 插入文件 ID、原始文件名到数据库
         // 8. 返回上传结果
 
-        long   fileId             = nextId();
         String originalFilename   = file.getOriginalFilename();
         String extension          = FilenameUtils.getExtension(originalFilename); // 上传的文件的后缀名
         String tempFilename       = fileId + (StringUtils.isBlank(extension) ? "" : "." + extension); // 临时文件名
@@ -0,0 +1,178 @@
+package com.xtuer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xtuer.bean.Page;
+import com.xtuer.bean.User;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 流式导出机构的所有用户为 CSV 或者 JSON Lines，内存占用和机构的用户数无关:
+ *     1. 按 ID 升序分段读取，每段最多 app.userExport.chunkSize 个用户 (WHERE user_id > 上一段最后的 ID LIMIT chunkSize)
+ *     2. 每段使用 MyBatis 的 Cursor 逐行读取 (fetchSize 为 Integer.MIN_VALUE，MySQL 驱动逐行返回，不缓存整个结果集)，
+ *        格式化后写入内存缓冲区，读完一段立即关闭 SqlSession 归还数据库连接
+ *     3. 再把缓冲区写到客户端，客户端接收很慢时只阻塞在写出上，不占用数据库连接
+ * 内存中最多只有一段用户格式化后的数据。
+ *
+ * CSV 中以 = + - @ 制表符 回车开头的值前面加上单引号，避免 Excel 把用户填写的昵称等当作公式执行 (CSV 注入)。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class UserExportService {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }; // Excel 打开 UTF-8 的 CSV 需要 BOM
+    private static final String[] COLUMNS = { "userId", "username", "nickname", "email", "mobile", "phone", "gender", "enabled" };
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final AppConfig config;
+
+    /**
+     * 导出的格式
+     */
+    public enum Format {
+        CSV("text/csv; charset=UTF-8", "csv"),
+        JSONL("application/x-ndjson; charset=UTF-8", "jsonl");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension   = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * 使用名字查找格式，不区分大小写，找不到时使用 CSV
+         *
+         * @param name 格式的名字，例如 csv, jsonl
+         * @return 返回格式
+         */
+        public static Format of(String name) {
+            return "jsonl".equalsIgnoreCase(name) ? JSONL : CSV;
+        }
+    }
+
+    public UserExportService(SqlSessionFactory sqlSessionFactory, AppConfig config) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.config = config;
+    }
+
+    /**
+     * 导出机构的所有用户到输出流，按用户 ID 升序排列，不包含密码
+     *
+     * @param orgId  机构 ID
+     * @param format 导出的格式
+     * @param output 输出流，例如 response.getOutputStream()
+     * @return 返回导出的用户数
+     * @throws IOException 写出失败时抛出异常 (例如客户端断开连接)
+     */
+    public long exportUsers(long orgId, Format format, OutputStream output) throws IOException {
+        int chunkSize = Math.max(1, config.getUserExportChunkSize());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+        Page page = new Page().setPageSize(chunkSize);
+        long count = 0;
+
+        if (format == Format.CSV) {
+            output.write(UTF8_BOM);
+            writeCsvRow(writer, COLUMNS);
+        }
+
+        while (true) {
+            // [1] 读取一段用户，格式化后写入缓冲区，读完后归还数据库连接
+            int rows = 0;
+
+            try (SqlSession session = sqlSessionFactory.openSession();
+                 Cursor<User> cursor = session.getMapper(UserMapper.class).streamUsersByOrgId(orgId, page)) {
+                for (User user : cursor) {
+                    writeUser(writer, format, user);
+                    page.setAfterId(user.getUserId());
+                    rows++;
+                }
+            }
+
+            // [2] 把缓冲区写到客户端
+            writer.flush();
+            buffer.writeTo(output);
+            output.flush();
+            buffer.reset();
+            count += rows;
+
+            if (rows < chunkSize) {
+                break;
+            }
+        }
+
+        log.info("[导出用户] 导出机构 {} 的 {} 个用户，格式 {}", orgId, count, format);
+        return count;
+    }
+
+    /**
+     * 写入一个用户
+     */
+    private static void writeUser(Writer writer, Format format, User user) throws IOException {
+        Object[] values = { user.getUserId(), user.getUsername(), user.getNickname(), user.getEmail(),
+                            user.getMobile(), user.getPhone(), user.getGender(), user.isEnabled() };
+
+        if (format == Format.CSV) {
+            writeCsvRow(writer, values);
+        } else {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                row.put(COLUMNS[i], values[i]);
+            }
+
+            // userId 超过 JavaScript 的安全整数范围，使用字符串
+            row.put("userId", String.valueOf(user.getUserId()));
+            writer.write(MAPPER.writeValueAsString(row));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * 写入 CSV 的一行，包含逗号、引号、换行的值使用引号包围，值中的引号转义为 2 个引号，可能被当作公式的值前面加上单引号
+     */
+    private static void writeCsvRow(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+
+            String value = values[i] == null ? "" : values[i].toString();
+
+            if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+
+        writer.write("\r\n");
+    }
+}
@@ -0,0 +1,301 @@
+package com.xtuer.service;
+
+import com.xtuer.bean.User;
+import com.xtuer.bean.UserImportResult;
+import com.xtuer.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <pre>
+ * 批量导入用户，和逐个调用 UserService.createOrUpdateUser() 相比，每批用户只需要几次数据库访问:
+ *     1. 每 app.userImport.batchSize 个用户为一批，检查账号和密码，同一批中重复的账号只导入第一个
+ *        (和 MySQL 默认的排序规则一样，账号不区分大小写，Alice 和 alice 是同一个账号)
+ *     2. 每个机构使用一个 IN 查询得到已经存在的用户的 ID，新用户一次分配所有的 ID
+ *     3. 只有新用户需要加密密码 (更新用户时不修改密码)，使用 app.userImport.hashThreads 个线程并行加密
+ *     4. 使用 MyBatis 的 ExecutorType.BATCH 执行多行的 INSERT ... ON DUPLICATE KEY UPDATE 和多行的角色 INSERT，
+ *        每批用户一个事务
+ *     5. 一批写入失败时回滚，再逐个写入这一批的用户，找出失败的行
+ * 每批处理完后调用进度的回调函数，失败的行记录行号、账号和原因，不影响其他行的导入。
+ * 每批提交后删除已更新的用户在所有节点的缓存。
+ *
+ * 导入后 user 的 userId 为数据库中的 ID，新用户的 password 为加密后的密码，已存在用户的 password 为 null。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class UserImportService extends BaseService {
+    private static final int ROWS_PER_STATEMENT = 100; // 每条 INSERT 语句的最大行数
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final PasswordService passwordService;
+
+    public UserImportService(SqlSessionFactory sqlSessionFactory, PasswordService passwordService) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.passwordService   = passwordService;
+    }
+
+    /**
+     * 批量导入用户: 创建新用户，更新已存在的用户 (机构 ID + 账号相同)
+     *
+     * @param users    用户
+     * @param progress 每批用户处理完后的回调函数，参数为当前的导入结果，可以为 null
+     * @return 返回导入的结果
+     */
+    public UserImportResult importUsers(Stream<User> users, Consumer<UserImportResult> progress) {
+        int batchSize = config.getUserImportBatchSize();
+        UserImportResult result = new UserImportResult();
+        ExecutorService hashExecutor = newHashExecutor();
+
+        try {
+            Iterator<User> iterator = users.iterator();
+            List<Row> batch = new ArrayList<>(batchSize);
+            int rowNumber = 0;
+
+            while (iterator.hasNext()) {
+                batch.add(new Row(++rowNumber, iterator.next()));
+
+                if (batch.size() >= batchSize || !iterator.hasNext()) {
+                    importBatch(batch, hashExecutor, result);
+                    batch.clear();
+
+                    log.info("[导入用户] 已处理 {} 行，创建 {} 个，更新 {} 个，失败 {} 行",
+                            result.getProcessed(), result.getCreated(), result.getUpdated(), result.getFailed());
+
+                    if (progress != null) {
+                        progress.accept(result);
+                    }
+                }
+            }
+        } finally {
+            hashExecutor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    /**
+     * 导入一批用户
+     */
+    private void importBatch(List<Row> batch, ExecutorService hashExecutor, UserImportResult result) {
+        // 1. 检查账号和密码，去掉同一批中重复的账号
+        // 2. 查询已存在的用户的 ID，为新用户分配 ID
+        // 3. 并行加密新用户的密码
+        // 4. 批量写入用户和角色，失败时逐个写入
+
+        result.addProcessed(batch.size());
+
+        // [1] 检查账号和密码，去掉同一批中重复的账号
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (Row row : batch) {
+            User user = row.user;
+
+            if (StringUtils.isBlank(user.getUsername())) {
+                result.addError(row.number, user.getUsername(), "账号不能为空");
+            } else if (StringUtils.isBlank(user.getPassword())) {
+                result.addError(row.number, user.getUsername(), "密码不能为空");
+            } else if (rows.putIfAbsent(user.getOrgId() + "/" + usernameKey(user.getUsername()), row) != null) {
+                result.addError(row.number, user.getUsername(), "账号重复");
+            }
+        }
+
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+
+            // [2] 查询已存在的用户的 ID，为新用户分配 ID
+            List<Row> valid = resolveUserIds(mapper, new ArrayList<>(rows.values()));
+
+            // [3] 并行加密新用户的密码
+            valid = hashPasswords(valid, hashExecutor, result);
+
+            // [4] 批量写入用户和角色，失败时逐个写入
+            try {
+                write(mapper, valid);
+                session.flushStatements();
+                session.commit();
+                valid.forEach(row -> row.count(result));
+                invalidateUpdatedUsers(valid);
+            } catch (RuntimeException ex) {
+                session.rollback();
+                log.warn("[导入用户] 批量写入失败，逐个写入: {}", ex.getMessage());
+                writeOneByOne(valid, result);
+            }
+        }
+    }
+
+    /**
+     * 每个机构使用一个 IN 查询得到已存在的用户的 ID，新用户一次分配所有的 ID
+     */
+    private List<Row> resolveUserIds(UserMapper mapper, List<Row> rows) {
+        Map<Long, List<Row>> rowsByOrg = rows.stream().collect(Collectors.groupingBy(row -> row.user.getOrgId()));
+        List<Row> newRows = new ArrayList<>();
+
+        for (Map.Entry<Long, List<Row>> entry : rowsByOrg.entrySet()) {
+            List<String> usernames = entry.getValue().stream().map(row -> row.user.getUsername()).collect(Collectors.toList());
+            Map<String, Long> existingIds = mapper.findUserIdsByOrgIdAndUsernames(entry.getKey(), usernames).stream()
+                    .collect(Collectors.toMap(user -> usernameKey(user.getUsername()), User::getUserId, (a, b) -> a));
+
+            for (Row row : entry.getValue()) {
+                Long userId = existingIds.get(usernameKey(row.user.getUsername()));
+
+                if (userId != null) {
+                    row.user.setUserId(userId);
+                    row.user.setPassword(null); // 更新用户时不修改密码
+                } else {
+                    row.created = true;
+                    newRows.add(row);
+                }
+            }
+        }
+
+        long[] ids = nextIds(newRows.size());
+        for (int i = 0; i < ids.length; i++) {
+            newRows.get(i).user.setUserId(ids[i]);
+        }
+
+        return rows;
+    }
+
+    /**
+     * 比较账号使用的 key: MySQL 默认的排序规则不区分大小写，数据库中的 alice 和导入的 Alice 是同一个用户，
+     * 如果当作新用户会分配新的 ID，ON DUPLICATE KEY UPDATE 把已存在的用户改为新的 ID，原来的角色成为孤儿记录
+     */
+    private static String usernameKey(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 并行加密新用户的密码，返回加密成功的行
+     */
+    private List<Row> hashPasswords(List<Row> rows, ExecutorService hashExecutor, UserImportResult result) {
+        List<Future<String>> futures = new ArrayList<>(rows.size());
+
+        for (Row row : rows) {
+            String password = row.user.getPassword();
+            futures.add(row.created ? hashExecutor.submit(() -> passwordService.encodeInCaller(password)) : null);
+        }
+
+        List<Row> hashed = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            Future<String> future = futures.get(i);
+
+            if (future == null) {
+                hashed.add(row);
+                continue;
+            }
+
+            try {
+                row.user.setPassword(future.get());
+                hashed.add(row);
+            } catch (ExecutionException ex) {
+                result.addError(row.number, row.user.getUsername(), "加密密码失败: " + ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("导入用户被中断", ex);
+            }
+        }
+
+        return hashed;
+    }
+
+    /**
+     * 使用多行的 INSERT 语句写入用户和角色，BATCH 模式下所有语句在 flushStatements() 时一次发送给数据库
+     */
+    private void write(UserMapper mapper, List<Row> rows) {
+        List<User> users = rows.stream().map(row -> row.user).collect(Collectors.toList());
+        List<User> usersWithRoles = users.stream().filter(user -> !user.getRoles().isEmpty()).collect(Collectors.toList());
+
+        for (int from = 0; from < users.size(); from += ROWS_PER_STATEMENT) {
+            mapper.upsertUsers(users.subList(from, Math.min(from + ROWS_PER_STATEMENT, users.size())));
+        }
+        for (int from = 0; from < usersWithRoles.size(); from += ROWS_PER_STATEMENT) {
+            mapper.insertUserRoles(usersWithRoles.subList(from, Math.min(from + ROWS_PER_STATEMENT, usersWithRoles.size())));
+        }
+    }
+
+    /**
+     * 逐个写入用户和角色，每个用户一个事务，记录失败的行
+     */
+    private void writeOneByOne(List<Row> rows, UserImportResult result) {
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.SIMPLE, false)) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+
+            for (Row row : rows) {
+                try {
+                    write(mapper, Collections.singletonList(row));
+                    session.commit();
+                    row.count(result);
+                    invalidateUpdatedUsers(Collections.singletonList(row));
+                } catch (RuntimeException ex) {
+                    session.rollback();
+                    result.addError(row.number, row.user.getUsername(), ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 提交后删除所有节点缓存的已更新的用户 (findUser 和 findUsers 使用的缓存)，新用户没有缓存
+     */
+    private void invalidateUpdatedUsers(List<Row> rows) {
+        for (Row row : rows) {
+            if (!row.created) {
+                userService.invalidateUserCache(row.user.getUserId());
+            }
+        }
+    }
+
+    /**
+     * 创建一次导入使用的 BCrypt 线程池，线程数为 app.userImport.hashThreads，导入结束后关闭
+     */
+    private ExecutorService newHashExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(config.getUserImportHashThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hash-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 导入的一行
+     */
+    private static final class Row {
+        final int  number; // 行号，从 1 开始
+        final User user;
+        boolean created;   // true 为新用户，false 为已存在的用户
+
+        Row(int number, User user) {
+            this.number = number;
+            this.user   = user;
+        }
+
+        void count(UserImportResult result) {
+            if (created) {
+                result.addCreated();
+            } else {
+                result.addUpdated();
+            }
+        }
+    }
+}
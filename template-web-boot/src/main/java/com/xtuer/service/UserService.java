@@ -1,7 +1,11 @@
 package com.xtuer.service;
 
-import com.alicp.jetcache.anno.CacheInvalidate;
+import com.alicp.jetcache.Cache;
+import com.alicp.jetcache.anno.CachePenetrationProtect;
+import com.alicp.jetcache.anno.CacheRefresh;
+import com.alicp.jetcache.anno.CacheType;
 import com.alicp.jetcache.anno.Cached;
+import com.alicp.jetcache.anno.CreateCache;
 import com.xtuer.bean.*;
 import com.xtuer.mapper.UserMapper;
 import com.xtuer.security.JwtService;
@@ -14,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.*;
 
 /**
  * 提供用户相关的服务，例如查询用户、创建用户、更新用户信息。
@@ -28,6 +33,22 @@ public class UserService extends BaseService {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private LoginRecordService loginRecordService;
+
+    @Autowired
+    private PasswordService passwordService;
+
+    // 和 findUser(userId) 使用同一个缓存，用于批量读写。同名的缓存只创建一次，使用第一个访问它的配置，
+    // 所以这里的防击穿和提前刷新的配置和 @Cached 方法的相同，先访问这个字段时也不会丢失
+    @CreateCache(name = CacheConst.CACHE, cacheType = CacheType.BOTH)
+    @CachePenetrationProtect
+    @CacheRefresh(refresh = CacheConst.REFRESH_SECONDS, stopRefreshAfterLastAccess = CacheConst.STOP_REFRESH_AFTER_LAST_ACCESS_SECONDS)
+    private Cache<String, User> userCache;
+
+    @Autowired
+    private CacheInvalidationService cacheInvalidationService;
+
     /**
      * 查找机构 orgId 下指定账号的用户
      *
@@ -47,30 +68,128 @@ public class UserService extends BaseService {
      * @param password 密码
      * @param orgId    机构 ID
      * @return 返回查询到的用户，如果无匹配的用户则返回 null
+     * @throws com.xtuer.exception.ApplicationException 服务器繁忙时抛出异常
      */
     public User findUser(String username, String password, long orgId) {
         // 由于使用了 BCrypt 进行加密，所以不能简单的使用密码去数据库进行搜索
         User user = userMapper.findUserByUsernameAndOrgId(username, orgId);
 
-        if (user != null && Utils.isPasswordValidByBCrypt(password, user.getPassword())) {
+        if (user != null && passwordService.matches(password, user.getPassword())) {
+            rehashPasswordIfNeeded(user, password);
             return user;
         }
 
         return null;
     }
 
+    /**
+     * 登录成功后，如果用户的密码不是使用当前配置的 cost 加密的，则在后台使用新的 cost 重新加密并保存
+     *
+     * @param user     密码校验通过的用户
+     * @param password 用户的原始密码
+     */
+    public void rehashPasswordIfNeeded(User user, String password) {
+        if (passwordService.needsRehash(user.getPassword())) {
+            long userId = user.getUserId();
+            passwordService.rehashLater(password, encoded -> userMapper.updateUserPassword(userId, encoded));
+        }
+    }
+
     /**
      * 查找用户
-     * 先从缓存里查找用户，如果缓存里没有，再从数据库加载
+     * 先从缓存里查找用户，如果缓存里没有，再从数据库加载 (同一个用户并发加载时只有一个线程查询数据库，其他线程等待结果)
      *
      * @param userId 用户 ID
      * @return 返回查找到的用户，查找不到则返回 null
      */
-    @Cached(name = CacheConst.CACHE, key = CacheConst.KEY_USER_ID)
+    @Cached(name = CacheConst.CACHE, key = CacheConst.KEY_USER_ID, cacheType = CacheType.BOTH)
+    @CachePenetrationProtect
+    @CacheRefresh(refresh = CacheConst.REFRESH_SECONDS, stopRefreshAfterLastAccess = CacheConst.STOP_REFRESH_AFTER_LAST_ACCESS_SECONDS)
     public User findUser(long userId) {
         return userMapper.findUserById(userId);
     }
 
+    /**
+     * 批量查找用户，和 findUser(userId) 使用同一个缓存:
+     *     1. 使用一次 Redis 批量读取 (pipeline) 查询缓存中的用户
+     *     2. 缓存中没有的用户使用一个 IN 查询从数据库加载
+     *     3. 从数据库加载的用户批量写入缓存
+     *
+     * @param userIds 用户 ID
+     * @return 返回 userId 到用户的 Map，按 userIds 的顺序，不存在的用户不包含在其中
+     */
+    public Map<Long, User> findUsers(Collection<Long> userIds) {
+        Map<Long, User> users = new LinkedHashMap<>();
+        Set<String> keys = new LinkedHashSet<>();
+
+        for (Long userId : userIds) {
+            if (userId != null) {
+                users.put(userId, null); // 先占位，保持传入的顺序
+                keys.add(CacheConst.PREFIX_USER + userId);
+            }
+        }
+
+        if (keys.isEmpty()) {
+            return users;
+        }
+
+        // [1] 使用一次 Redis 批量读取查询缓存中的用户
+        Map<String, User> cached = userCache.getAll(keys);
+        List<Long> missedIds = new ArrayList<>();
+
+        for (Long userId : users.keySet()) {
+            User user = cached.get(CacheConst.PREFIX_USER + userId);
+
+            if (user != null) {
+                users.put(userId, user);
+            } else {
+                missedIds.add(userId);
+            }
+        }
+
+        // [2] 缓存中没有的用户使用一个 IN 查询从数据库加载
+        // [3] 从数据库加载的用户批量写入缓存
+        if (!missedIds.isEmpty()) {
+            Map<String, User> loaded = new HashMap<>();
+
+            for (User user : userMapper.findUsersByIds(missedIds)) {
+                users.put(user.getUserId(), user);
+                loaded.put(CacheConst.PREFIX_USER + user.getUserId(), user);
+            }
+
+            if (!loaded.isEmpty()) {
+                userCache.putAll(loaded);
+            }
+        }
+
+        users.values().removeIf(Objects::isNull);
+        return users;
+    }
+
+    /**
+     * 游标分页查找机构的用户，按 ID 升序排列
+     *
+     * @param orgId 机构 ID
+     * @param page  游标分页的分页对象，使用 Page.after(cursor, pageSize) 创建
+     * @return 返回这一页的用户和下一页的游标
+     */
+    public CursorPage<User> findUsersByOrgId(long orgId, Page page) {
+        return CursorPage.of(userMapper.findUsersByOrgIdAfter(orgId, page), page, User::getUserId);
+    }
+
+    /**
+     * 查找创建时间在 [from, to) 之间的用户，按创建时间升序排列。
+     * 用户 ID 的高位是创建时间，把时间范围转换为 ID 的范围后使用主键进行范围查询，不需要创建时间的索引
+     *
+     * @param from 开始时间 (包含)
+     * @param to   结束时间 (不包含)
+     * @param page 分页对象
+     * @return 返回用户列表
+     */
+    public List<User> findUsersCreatedBetween(Date from, Date to, Page page) {
+        return userMapper.findUsersByIdRange(idCodec.minId(from), idCodec.maxId(to), page);
+    }
+
     /**
      * 检查用户名在机构中是否使用过
      *
@@ -103,7 +222,7 @@ public class UserService extends BaseService {
             user.setUserId(userId);
         }
 
-        user.setPassword(Utils.passwordByBCrypt(user.getPassword())); // 加密密码
+        user.setPassword(passwordService.encode(user.getPassword())); // 加密密码
 
         // [2] 保存用户到数据库
         userMapper.upsertUser(user);
@@ -126,8 +245,8 @@ public class UserService extends BaseService {
      * @return 返回 token
      */
     public String loginToken(User user, HttpServletResponse response) {
-        // 1. 创建用户的登录记录
-        userMapper.insertUserLoginRecord(user.getUserId(), user.getUsername());
+        // 1. 创建用户的登录记录 (放入队列，延迟批量写入数据库)
+        loginRecordService.addLoginRecord(user.getUserId(), user.getUsername());
 
         // 2. 生成用户的 token，并保存 token 到 cookie (方便浏览器端使用 Ajax 登录)
         String token = jwtService.generateToken(user);
@@ -142,13 +261,13 @@ public class UserService extends BaseService {
      * @param userId 用户的 ID
      * @param mobile 用户的手机号
      */
-    @CacheInvalidate(name = CacheConst.CACHE, key = CacheConst.KEY_USER_ID)
     public Result<String> updateUserMobile(long userId, String mobile) {
         mobile = StringUtils.trim(mobile);
 
         if (StringUtils.isNumeric(mobile) && mobile.length() == 11) {
             // 简单的校验：手机号为 11 个数字
             userMapper.updateUserMobile(userId, mobile);
+            invalidateUserCache(userId);
             return Result.ok("手机更新成功");
         } else {
             return Result.fail("请输入正确的手机号");
@@ -185,7 +304,7 @@ public class UserService extends BaseService {
         // [3] 查询用户得到用户密码 password
         // [4] 比较 password 和 oldPassword，不相同则返回
         User user = userMapper.findUserById(userId);
-        if (!Utils.isPasswordValidByBCrypt(oldPassword, user.getPassword())) {
+        if (!passwordService.matches(oldPassword, user.getPassword())) {
             return Result.fail("旧密码不正确");
         }
 
@@ -195,7 +314,8 @@ public class UserService extends BaseService {
         }
 
         // [6] 验证都通过了，更新用户密码
-        userMapper.updateUserPassword(userId, Utils.passwordByBCrypt(newPassword));
+        userMapper.updateUserPassword(userId, passwordService.encode(newPassword));
+        jwtService.revokeUserTokens(userId); // 撤销之前签发的 token，所有设备需要重新登录
 
         return Result.ok(null, "密码更新成功");
     }
@@ -206,8 +326,9 @@ public class UserService extends BaseService {
      * @param userId 用户的 ID
      */
     public void resetUserPassword(long userId) {
-        String password = Utils.passwordByBCrypt("123456"); // 使用 BCrypt 加密
+        String password = passwordService.encode("123456"); // 使用 BCrypt 加密
         userMapper.updateUserPassword(userId, password);
+        jwtService.revokeUserTokens(userId);
     }
 
     /**
@@ -216,9 +337,9 @@ public class UserService extends BaseService {
      * @param userId   用户的 ID
      * @param nickname 用户的昵称
      */
-    @CacheInvalidate(name = CacheConst.CACHE, key = CacheConst.KEY_USER_ID)
     public void updateUserNickname(long userId, String nickname) {
         userMapper.updateUserNickname(userId, nickname);
+        invalidateUserCache(userId);
     }
 
     /**
@@ -227,7 +348,6 @@ public class UserService extends BaseService {
      * @param userId 用户 ID
      * @param avatar 用户头像
      */
-    @CacheInvalidate(name = CacheConst.CACHE, key = CacheConst.KEY_USER_ID)
     public String updateUserAvatar(long userId, String avatar) {
         // 1. 移动 avatar 的图片到 repo 并得到 avatar 的最新 URL
         // 2. 更新数据库中用户的 avatar
@@ -238,6 +358,7 @@ public class UserService extends BaseService {
 
         if (avatar != null) {
             userMapper.updateUserAvatar(userId, avatar);
+            invalidateUserCache(userId);
         }
 
         return avatar;
@@ -249,9 +370,18 @@ public class UserService extends BaseService {
      * @param userId 用户的 ID
      * @param gender 用户的性别
      */
-    @CacheInvalidate(name = CacheConst.CACHE, key = CacheConst.KEY_USER_ID)
     public void updateUserGender(long userId, int gender) {
         userMapper.updateUserGender(userId, gender);
+        invalidateUserCache(userId);
+    }
+
+    /**
+     * 删除所有节点缓存的用户
+     *
+     * @param userId 用户的 ID
+     */
+    public void invalidateUserCache(long userId) {
+        cacheInvalidationService.invalidate(CacheConst.PREFIX_USER + userId);
     }
 
     /**
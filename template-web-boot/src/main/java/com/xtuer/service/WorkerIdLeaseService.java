@@ -0,0 +1,232 @@
+package com.xtuer.service;
+
+import com.xtuer.bean.WorkerLease;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.WorkerLeaseMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * CachedUidGenerator 的机器 ID 租约服务 (见 LeasedWorkerIdAssigner)，机器 ID 在 [0, 1023] 中循环使用，不会随着重启一直增长:
+ *     1. 启动时从表 worker_lease 申请一个空闲的机器 ID [0, 1023]
+ *     2. 运行时每 1/3 个租期心跳续约一次
+ *     3. 关闭时释放租约
+ *
+ * 申请机器 ID 的逻辑:
+ *     A. 优先回收过期的租约: 过期超过一个租期的租约才能被回收 (留出一个租期容忍节点之间的时钟误差)
+ *     B. 没有可回收的租约时创建新的租约，使用最小的没有租约的机器 ID (表中删除过的机器 ID 也会被重新使用)
+ *     C. 1024 个机器 ID 都被使用时抛出异常
+ *
+ * Fencing: 租约每次被申请时 fence 加 1，续约时需要带上申请时得到的 fence，续约失败说明租约已经被其他节点回收，
+ * 或者租约已经过期 (例如长时间 GC、数据库不可用导致心跳失败)，这时 isLeaseValid() 返回 false，
+ * BaseService.nextId() 拒绝继续生成 ID，保证两个存活的节点不会使用同一个机器 ID。
+ *
+ * 默认不启用 (app.workerLease.enabled 为 false)，这时和以前一样由 uid-generator 默认的 WorkerIdAssigner 分配机器 ID，
+ * 不需要表 worker_lease，isLeaseValid() 总是返回 true。
+ * </pre>
+ */
+@Slf4j
+@Service
+public class WorkerIdLeaseService {
+    /** 支持的最大机器 ID */
+    private static final int MAX_WORKER_ID = 1023;
+
+    /** 申请租约时的最大尝试次数 (并发申请时 CAS 失败会重试) */
+    private static final int MAX_CLAIM_ATTEMPTS = 16;
+
+    private final WorkerLeaseMapper leaseMapper;
+    private final AppConfig config;
+    private final String owner;
+
+    private volatile int     workerId  = -1;    // 申请到的机器 ID
+    private volatile long    fence     = 0;     // 申请租约时得到的 fence
+    private volatile long    expiredAt = 0;     // 租约的过期时间
+    private volatile boolean leaseLost = false; // 租约是否已经被其他节点回收
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    public WorkerIdLeaseService(WorkerLeaseMapper leaseMapper, AppConfig config) {
+        this.leaseMapper = leaseMapper;
+        this.config = config;
+        this.owner  = ManagementFactory.getRuntimeMXBean().getName(); // pid@host
+    }
+
+    /**
+     * 启动时申请机器 ID，并开始心跳续约
+     */
+    @PostConstruct
+    public void start() {
+        if (!config.isWorkerLeaseEnabled()) {
+            expiredAt = Long.MAX_VALUE;
+            log.info("[租约] 未启用机器 ID 租约，使用 uid-generator 默认的 WorkerIdAssigner");
+            return;
+        }
+
+        claim();
+
+        long period = Math.max(1, config.getWorkerLeaseDuration() / 3);
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "worker-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭时停止心跳并释放租约
+     */
+    @PreDestroy
+    public void stop() {
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+        }
+
+        if (config.isWorkerLeaseEnabled()) {
+            release();
+        }
+    }
+
+    /**
+     * 申请一个空闲的机器 ID
+     *
+     * @return 返回申请到的机器 ID
+     * @throws IllegalStateException 没有空闲的机器 ID 时抛出异常
+     */
+    public int claim() {
+        long duration = config.getWorkerLeaseDuration();
+
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            long now = System.currentTimeMillis();
+            WorkerLease lease = new WorkerLease().setOwner(owner).setExpiredAt(now + duration);
+
+            // [A] 优先回收过期超过一个租期的租约
+            WorkerLease expired = leaseMapper.findReclaimableLease(now - duration);
+
+            if (expired != null) {
+                if (leaseMapper.reclaimLease(expired.getWorkerId(), expired.getFence(), owner, lease.getExpiredAt()) == 1) {
+                    return acquired(lease.setWorkerId(expired.getWorkerId()).setFence(expired.getFence() + 1), expired.getOwner());
+                }
+
+                continue; // 被其他节点抢先回收了，重新尝试
+            }
+
+            // [B] 没有可回收的租约时创建新的租约，使用最小的空闲机器 ID
+            int nextWorkerId = leaseMapper.findFreeWorkerId();
+
+            // [C] 1024 个机器 ID 都被使用时抛出异常
+            if (nextWorkerId > MAX_WORKER_ID) {
+                throw new IllegalStateException(String.format("没有空闲的机器 ID，[0, %d] 都已经被使用", MAX_WORKER_ID));
+            }
+
+            try {
+                leaseMapper.insertLease(lease.setWorkerId(nextWorkerId).setFence(1));
+                return acquired(lease, null);
+            } catch (DuplicateKeyException ex) {
+                log.debug("[租约] 机器 ID {} 已经被其他节点申请，重新尝试", nextWorkerId);
+            }
+        }
+
+        throw new IllegalStateException("申请机器 ID 失败，并发冲突次数过多");
+    }
+
+    /**
+     * 续约，续约失败说明租约已经被其他节点回收
+     *
+     * @return 续约成功返回 true，否则返回 false
+     */
+    public boolean renew() {
+        if (leaseLost) {
+            return false;
+        }
+
+        long newExpiredAt = System.currentTimeMillis() + config.getWorkerLeaseDuration();
+
+        try {
+            if (leaseMapper.renewLease(workerId, fence, newExpiredAt) == 1) {
+                expiredAt = newExpiredAt;
+                return true;
+            }
+
+            leaseLost = true;
+            log.error("[租约] 机器 ID {} 的租约已经被其他节点回收 (fence {})，停止生成 ID", workerId, fence);
+        } catch (RuntimeException ex) {
+            // 数据库暂时不可用时等待下一次心跳，租约过期前仍然有效
+            log.warn("[租约] 机器 ID {} 续约失败: {}", workerId, ex.getMessage());
+        }
+
+        return false;
+    }
+
+    /**
+     * 释放租约: 把过期时间设置为当前时间，过一个租期后其他节点才能回收此机器 ID
+     */
+    public void release() {
+        if (leaseLost || workerId < 0) {
+            return;
+        }
+
+        try {
+            leaseMapper.renewLease(workerId, fence, System.currentTimeMillis());
+            log.info("[租约] 释放机器 ID {}", workerId);
+        } catch (RuntimeException ex) {
+            log.warn("[租约] 释放机器 ID {} 失败: {}", workerId, ex.getMessage());
+        }
+
+        expiredAt = 0;
+    }
+
+    /**
+     * 判断租约是否有效: 租约没有被其他节点回收，并且没有过期
+     *
+     * @return 租约有效返回 true，否则返回 false
+     */
+    public boolean isLeaseValid() {
+        return !leaseLost && System.currentTimeMillis() < expiredAt;
+    }
+
+    /**
+     * 获取申请到的机器 ID
+     *
+     * @return 返回机器 ID，范围是 [0, 1023]，未启用租约时为 -1
+     */
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 获取申请租约时得到的 fence
+     *
+     * @return 返回 fence
+     */
+    public long getFence() {
+        return fence;
+    }
+
+    /**
+     * 保存申请到的租约
+     */
+    private int acquired(WorkerLease lease, String previousOwner) {
+        workerId  = lease.getWorkerId();
+        fence     = lease.getFence();
+        expiredAt = lease.getExpiredAt();
+        leaseLost = false;
+
+        if (previousOwner != null) {
+            log.info("[租约] 回收机器 ID {} (原持有者 {})，fence {}", workerId, previousOwner, fence);
+        } else {
+            log.info("[租约] 申请到新的机器 ID {}，fence {}", workerId, fence);
+        }
+
+        return workerId;
+    }
+}
@@ -0,0 +1,135 @@
+package com.xtuer.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <pre>
+ * 布隆过滤器: 判断元素 "一定不在" 或者 "可能在" 集合中，判断时只需要计算几个哈希，不需要访问集合。
+ * 不在集合中的元素有 fpp 的概率被误判为在集合中，所以 mightContain() 返回 true 时还需要使用精确的集合再次判断。
+ *
+ * 支持 String 和 long 类型的元素，使用 64 位哈希的高低 32 位做双重哈希得到 k 个位置: h1 + i * h2。
+ * 线程安全: 位数组使用 AtomicLongArray，可以在查询的同时添加元素，添加完成后其他线程立即可见。
+ * </pre>
+ */
+public final class BloomFilter {
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    /**
+     * 创建布隆过滤器
+     *
+     * @param expectedInsertions 预计的元素数量
+     * @param fpp                期望的误判率，例如 0.01
+     */
+    public BloomFilter(int expectedInsertions, double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException(String.format("False positive probability must be in (0, 1): %f", fpp));
+        }
+
+        int n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+
+        this.bitCount  = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.bits      = new AtomicLongArray((bitCount + 63) >>> 6);
+    }
+
+    /**
+     * 添加字符串到布隆过滤器
+     *
+     * @param value 字符串
+     */
+    public void put(String value) {
+        putHash(hash(value));
+    }
+
+    /**
+     * 添加整数到布隆过滤器
+     *
+     * @param value 整数
+     */
+    public void put(long value) {
+        putHash(mix(value));
+    }
+
+    /**
+     * 判断字符串是否可能在集合中
+     *
+     * @param value 字符串
+     * @return 返回 false 时一定不在集合中，返回 true 时可能在集合中
+     */
+    public boolean mightContain(String value) {
+        return mightContainHash(hash(value));
+    }
+
+    /**
+     * 判断整数是否可能在集合中
+     *
+     * @param value 整数
+     * @return 返回 false 时一定不在集合中，返回 true 时可能在集合中
+     */
+    public boolean mightContain(long value) {
+        return mightContainHash(mix(value));
+    }
+
+    /**
+     * 使用 64 位哈希设置 k 个位
+     */
+    private void putHash(long hash64) {
+        int h1 = (int) hash64;
+        int h2 = (int) (hash64 >>> 32);
+
+        for (int i = 0; i < hashCount; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            long bit   = 1L << index;
+            int  word  = index >>> 6;
+
+            if ((bits.get(word) & bit) == 0) {
+                bits.getAndAccumulate(word, bit, (current, mask) -> current | mask);
+            }
+        }
+    }
+
+    /**
+     * 使用 64 位哈希检查 k 个位是否都被设置了
+     */
+    private boolean mightContainHash(long hash64) {
+        int h1 = (int) hash64;
+        int h2 = (int) (hash64 >>> 32);
+
+        for (int i = 0; i < hashCount; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 字符串的 64 位 FNV-1a 哈希，再混淆一次使得高低位分布均匀
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return mix(hash);
+    }
+
+    /**
+     * SplitMix64 的混淆函数
+     */
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
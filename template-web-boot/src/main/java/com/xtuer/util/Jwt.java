@@ -1,14 +1,22 @@
 package com.xtuer.util;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONException;
 import com.alibaba.fastjson.TypeReference;
 import lombok.Getter;
 import lombok.Setter;
+import com.xtuer.bean.Role;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.springframework.util.Assert;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -23,12 +31,37 @@ import java.util.TreeMap;
  *
  * 为什么不使用 com.auth0:java-jwt:3.3.0 实现的 JWT 呢？因为他的算法在 Nginx 端实现是不够方便。
  *
+ * 签名算法有 2 种:
+ *     MD5  : 旧的签名算法，signature = MD5(appKey + 按 key 的字母序排列的 params 的 value)，签名为 32 个字符的 16 进制字符串
+ *     HS256: 新的签名算法，signature = HMAC-SHA256(appKey, payload)，直接对 payload 的字节签名，不需要排序和拼接 params，
+ *            签名为 43 个字符的 URL Safe 的 Base64 字符串 (没有补齐)，通过签名的长度区分 token 使用的算法
+ * 迁移期间 checkToken() 同时接受 2 种算法的 token，迁移完成后使用 checkToken(token, appKey, false) 拒绝 MD5 的 token。
+ *
  * 使用方法:
  * 生成 token: Jwt.create(appId, appKey).param("username", "放下").expiredAt(System.currentTimeMillis() + 2000).token()
+ * 生成 token: Jwt.create(appId, appKey).algorithm(Jwt.Algorithm.HS256).param("username", "放下").token()
  * 校验 token: Jwt.checkToken(token, appKey)
  * 提取 token 中的用户数据: Jwt.params(token)
+ * 校验 token 并提取用户数据: Jwt.verify(token, appKey).getUserId()
  */
 public final class Jwt {
+    /**
+     * 签名算法
+     */
+    public enum Algorithm {
+        MD5, HS256
+    }
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    private static final int HS256_SIGNATURE_LENGTH = 43; // 32 个字节的 Base64 编码 (没有补齐)
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
+
+    /**
+     * 每个线程复用一个 Mac 对象，appKey 不变时不需要重新初始化
+     */
+    private static final ThreadLocal<HmacHolder> HMAC = ThreadLocal.withInitial(HmacHolder::new);
+
     /**
      * 检查 token 是否有效: 使用 payload 计算的签名结果和 token 中的签名一样，如果还存在有效期 expiredAt 并且未过期，则签名有效.
      *
@@ -37,33 +70,91 @@ public final class Jwt {
      * @return 签名有效返回 true，否则返回 false.
      */
     public static boolean checkToken(String jwtToken, String appKey) {
+        return checkToken(jwtToken, appKey, true);
+    }
+
+    /**
+     * 检查 token 是否有效，同 checkToken(jwtToken, appKey)，acceptMd5 为 false 时 MD5 签名的 token 无效.
+     *
+     * @param jwtToken  JWT token
+     * @param appKey    应用的 Key
+     * @param acceptMd5 是否接受 MD5 签名的 token
+     * @return 签名有效返回 true，否则返回 false.
+     */
+    public static boolean checkToken(String jwtToken, String appKey, boolean acceptMd5) {
+        return verify(jwtToken, appKey, acceptMd5) != null;
+    }
+
+    /**
+     * 校验 token 并解析出 token 中的数据，payload 只解码和解析一次，同时校验签名和有效期.
+     *
+     * @param jwtToken JWT token
+     * @param appKey   应用的 Key
+     * @return token 有效返回 token 中的数据，无效返回 null.
+     */
+    public static Claims verify(String jwtToken, String appKey) {
+        return verify(jwtToken, appKey, true);
+    }
+
+    /**
+     * 校验 token 并解析出 token 中的数据，同 verify(jwtToken, appKey)，acceptMd5 为 false 时 MD5 签名的 token 无效.
+     *
+     * @param jwtToken  JWT token
+     * @param appKey    应用的 Key
+     * @param acceptMd5 是否接受 MD5 签名的 token
+     * @return token 有效返回 token 中的数据，无效返回 null.
+     */
+    public static Claims verify(String jwtToken, String appKey, boolean acceptMd5) {
+        // 1. HS256 的 token 先对 payload 的字节校验签名，签名无效时不需要再解析 payload
+        // 2. 解析出参数的 map params
+        // 3. 如果 params 中存在 expiredAt，如果 expiredAt 超过当前时间则 token 过期无效
+        // 4. 如果 token 未过期，MD5 的 token 则用 appKey+params 计算签名，如果和 signature 相等则签名有效
+        // 5. 使用 params 创建 Claims，同时解析出 userId 和 roles
+
         if (StringUtils.isBlank(jwtToken)) {
-            return false;
+            return null;
         }
 
         int dotIndex = jwtToken.indexOf(".");
         if (dotIndex == -1) {
-            return false;
+            return null;
         }
 
-        try {
-            // 1. 解析出参数的 map params
-            // 2. 如果 params 中存在 expiredAt，如果 expiredAt 超过当前时间则 token 过期无效
-            // 3. 如果 token 未过期，则用 appKey+params 计算签名，如果和 signature 相等则签名有效
-            Map<String, String> params = Jwt.params(jwtToken);
+        // [1] HS256 的 token 先对 payload 的字节校验签名，签名无效时不需要再解析 payload
+        String signature = jwtToken.substring(dotIndex+1);
+        boolean hs256    = signature.length() == HS256_SIGNATURE_LENGTH;
 
-            try {
-                // 检查签名是否过期
-                long expiredAt = Long.parseLong(params.get("expiredAt"));
-                if (expiredAt < System.currentTimeMillis()) {
-                    return false;
-                }
-            } catch (NumberFormatException ex) {}
+        if (hs256 && !verifyHs256(jwtToken, dotIndex, signature, appKey)) {
+            return null;
+        }
+        if (!hs256 && !acceptMd5) {
+            return null;
+        }
 
-            String signature = jwtToken.substring(dotIndex+1);
-            return signature.equals(Jwt.sign(params, appKey));
-        } catch (JSONException ex) {
-            return false;
+        // [2] 解析出参数的 map params
+        Map<String, String> params = Jwt.params(jwtToken);
+
+        if (params.isEmpty()) {
+            return null;
+        }
+
+        // [3] 检查签名是否过期，没有 expiredAt 时一直有效
+        long expiredAt = NumberUtils.toLong(params.get("expiredAt"), Long.MAX_VALUE);
+
+        if (expiredAt < System.currentTimeMillis()) {
+            return null;
+        }
+
+        // [4] MD5 的 token 则用 appKey+params 计算签名
+        if (!hs256 && !signature.equals(Jwt.sign(params, appKey))) {
+            return null;
+        }
+
+        // [5] 使用 params 创建 Claims，roles 格式错误时 token 无效
+        try {
+            return new Claims(params, expiredAt);
+        } catch (RuntimeException ex) {
+            return null;
         }
     }
 
@@ -80,8 +171,12 @@ public final class Jwt {
         }
 
         try {
-            String payload = Utils.unbase64UrlSafe(jwtToken.substring(0, dotIndex));
-            return JSON.parseObject(payload, new TypeReference<TreeMap<String, String>>() {});
+            // MD5 的 token 使用 * 补齐，HS256 的 token 没有补齐，去掉补齐后都可以使用 JDK 的 URL Safe 解码
+            String payload = jwtToken.substring(0, dotIndex);
+            payload = StringUtils.stripEnd(payload, "*");
+            byte[] bytes = BASE64_DECODER.decode(payload);
+
+            return JSON.parseObject(new String(bytes, StandardCharsets.UTF_8), new TypeReference<TreeMap<String, String>>() {});
         } catch (Exception ex) {
             return Collections.emptyMap();
         }
@@ -101,6 +196,106 @@ public final class Jwt {
         return Utils.md5(signedText.toString());
     }
 
+    /**
+     * 使用 HMAC-SHA256 对 token 中 . 前面的 payload 签名，和 token 中的签名进行比较
+     */
+    private static boolean verifyHs256(String jwtToken, int dotIndex, String signature, String appKey) {
+        byte[] payload = jwtToken.substring(0, dotIndex).getBytes(StandardCharsets.US_ASCII);
+        byte[] expected;
+
+        try {
+            expected = BASE64_DECODER.decode(signature);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+
+        // 使用固定时间的比较，避免通过响应时间猜测签名
+        return MessageDigest.isEqual(expected, HMAC.get().mac(appKey).doFinal(payload));
+    }
+
+    /**
+     * 使用 HMAC-SHA256 对 payload 签名，返回 URL Safe 的 Base64 编码的签名
+     */
+    private static String signHs256(byte[] payload, String appKey) {
+        return BASE64_ENCODER.encodeToString(HMAC.get().mac(appKey).doFinal(payload));
+    }
+
+    /**
+     * 线程使用的 Mac 对象，记录初始化时使用的 appKey
+     */
+    private static final class HmacHolder {
+        private final Mac mac;
+        private String key;
+
+        HmacHolder() {
+            try {
+                mac = Mac.getInstance(HMAC_SHA256);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        /**
+         * 获取使用 appKey 初始化的 Mac 对象，appKey 和上次的相同时直接复用
+         */
+        Mac mac(String appKey) {
+            if (!appKey.equals(key)) {
+                try {
+                    mac.init(new SecretKeySpec(appKey.getBytes(StandardCharsets.UTF_8), HMAC_SHA256));
+                    key = appKey;
+                } catch (GeneralSecurityException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+            return mac;
+        }
+    }
+
+    /**
+     * 校验通过的 token 中的数据，userId 和 roles 在创建时解析好，使用时不需要再转换
+     */
+    @Getter
+    public static final class Claims {
+        private final Map<String, String> params; // payload 的参数 (不可修改)
+        private final long expiredAt;             // token 过期时间，没有过期时间时为 Long.MAX_VALUE
+        private final long userId;                // 参数 userId，没有时为 0
+        private final EnumSet<Role> roles;        // 参数 roles (JSON 数组)，没有时为空集合
+
+        Claims(Map<String, String> params, long expiredAt) {
+            this.params    = Collections.unmodifiableMap(params);
+            this.expiredAt = expiredAt;
+            this.userId    = NumberUtils.toLong(params.get("userId"), 0);
+            this.roles     = EnumSet.noneOf(Role.class);
+
+            String rolesJson = params.get("roles");
+            if (rolesJson != null) {
+                for (String role : JSON.parseArray(rolesJson, String.class)) {
+                    roles.add(Role.valueOf(role));
+                }
+            }
+        }
+
+        /**
+         * 获取参数的值
+         *
+         * @param name 参数名
+         * @return 返回参数的值，不存在时返回 null
+         */
+        public String get(String name) {
+            return params.get(name);
+        }
+
+        /**
+         * 获取角色，返回的是拷贝，可以修改
+         *
+         * @return 返回角色的集合
+         */
+        public EnumSet<Role> getRoles() {
+            return EnumSet.copyOf(roles);
+        }
+    }
+
     /**
      * 使用 appId 和 appKey 创建一个 JWT 的 builder，然后使用此 builder 设置 payload 的参数计算 token.
      *
@@ -118,6 +313,7 @@ public final class Jwt {
         private Long expiredAt; // token 过期时间
         private String appId;   // 应用的 ID
         private String appKey;  // 应用的 key
+        private Algorithm algorithm = Algorithm.MD5; // 签名算法
         private TreeMap<String, String> params = new TreeMap<>(); // payload 的参数
 
         public Builder(String appId, String appKey) {
@@ -138,6 +334,18 @@ public final class Jwt {
             return this;
         }
 
+        /**
+         * 设置签名算法，默认为 MD5
+         *
+         * @param algorithm 签名算法
+         * @return 返回 builder 自己
+         */
+        public Builder algorithm(Algorithm algorithm) {
+            Assert.notNull(algorithm, "JWT algorithm cannot be null");
+            this.algorithm = algorithm;
+            return this;
+        }
+
         /**
          * 添加用户数据到 token 中
          *
@@ -162,6 +370,7 @@ public final class Jwt {
          *     4. signature = MD5(signedText)
          *     5. 把 params 转换为 JSON 字符串并使用 URL Safe 的 BASE64 对其进行编码得到 payload
          *     6. 最后得到的签名结果为 payload.signature
+         * 算法为 HS256 时，payload 使用 JDK 的 URL Safe 的 BASE64 编码 (没有补齐)，signature = HMAC-SHA256(appKey, payload)
          *
          * @return 返回使用 JWT 签名的字符串
          */
@@ -175,6 +384,11 @@ public final class Jwt {
             }
 
             // 计算签名
+            if (algorithm == Algorithm.HS256) {
+                String payload = BASE64_ENCODER.encodeToString(JSON.toJSONBytes(params));
+                return payload + "." + Jwt.signHs256(payload.getBytes(StandardCharsets.US_ASCII), appKey);
+            }
+
             String payload   = Utils.base64UrlSafe(JSON.toJSONString(params));
             String signature = Jwt.sign(params, appKey);
             return payload + "." + signature;
@@ -1,5 +1,10 @@
 package com.xtuer.util;
 
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 /**
  * MySQL 的分页和 MongoDB 不同:
  *     MySQL: 使用 offset + size，需要用 pageNumber+size 计算 offset
@@ -11,8 +16,14 @@ package com.xtuer.util;
  *
  * MongoDB 的分页对象使用方法 pageRequestOf 创建
  *     PageUtils.pageRequestOf(pageNumber, pageSize, sort)
+ *
+ * 游标分页时，返回给客户端的游标是不透明的字符串，客户端原样传回即可:
+ *     PageUtils.cursor(lastId) 使用这一页最后一条记录的 ID 生成游标
+ *     PageUtils.afterId(cursor) 从游标得到上一页最后一条记录的 ID
  */
 public final class PageUtils {
+    private static final String CURSOR_PREFIX = "id:"; // 游标的前缀，用于校验游标
+
     /**
      * 根据传入的页数、每页上的最多记录数计算这一页面的开始位置 offset，最小为 0.
      *
@@ -44,4 +55,39 @@ public final class PageUtils {
         int page = (recordCount-1) / pageSize + 1; // (recordCount + pageSize - 1) / pageSize;
         return page;
     }
+
+    /**
+     * 使用这一页最后一条记录的 ID 生成下一页的游标
+     *
+     * @param lastId 这一页最后一条记录的 ID
+     * @return 返回游标
+     */
+    public static String cursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 从游标得到上一页最后一条记录的 ID
+     *
+     * @param cursor 游标，为空时表示第一页
+     * @return 返回上一页最后一条记录的 ID，游标为空时返回 0
+     * @throws IllegalArgumentException 游标无效时抛出异常
+     */
+    public static long afterId(String cursor) {
+        if (StringUtils.isBlank(cursor)) {
+            return 0;
+        }
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+            if (value.startsWith(CURSOR_PREFIX)) {
+                return Long.parseLong(value.substring(CURSOR_PREFIX.length()));
+            }
+        } catch (IllegalArgumentException ignored) {
+            // 包含 NumberFormatException
+        }
+
+        throw new IllegalArgumentException("无效的分页游标: " + cursor);
+    }
 }
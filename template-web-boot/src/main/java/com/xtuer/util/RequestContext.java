@@ -0,0 +1,90 @@
+package com.xtuer.util;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <pre>
+ * 请求范围内的缓存: 一次请求中多次使用的值 (例如当前域名、当前机构) 只计算一次，保存到 request 的属性中，之后直接返回。
+ * 值为 null 时也会缓存。不在请求线程中时 (例如后台线程) 每次都重新计算。
+ *
+ * 调试统计: getResolvedCount() 为实际计算的次数，getAvoidedCount() 为从请求中直接返回、省去的计算次数。
+ *
+ * 当前登录用户不需要使用此类: JwtAuthenticationFilter 每个请求只解析一次 token，
+ * 把用户保存到 SecurityContext 中，SecurityUtils.getCurrentUser() 只是读取线程变量。
+ * </pre>
+ */
+public final class RequestContext {
+    public static final String HOST         = RequestContext.class.getName() + ".host";
+    public static final String ORGANIZATION = RequestContext.class.getName() + ".organization";
+
+    private static final Object NULL = new Object(); // 保存 null 值
+    private static final LongAdder resolvedCount = new LongAdder();
+    private static final LongAdder avoidedCount  = new LongAdder();
+
+    private RequestContext() {}
+
+    /**
+     * 获取当前请求中名字为 name 的值，第一次获取时调用 resolver 计算并保存到请求中
+     *
+     * @param name     值的名字，例如 RequestContext.HOST
+     * @param resolver 计算值的函数
+     * @return 返回值
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(String name, Supplier<T> resolver) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        if (attributes == null) {
+            resolvedCount.increment();
+            return resolver.get();
+        }
+
+        Object value = attributes.getAttribute(name, RequestAttributes.SCOPE_REQUEST);
+
+        if (value != null) {
+            avoidedCount.increment();
+            return value == NULL ? null : (T) value;
+        }
+
+        T resolved = resolver.get();
+        attributes.setAttribute(name, resolved == null ? NULL : resolved, RequestAttributes.SCOPE_REQUEST);
+        resolvedCount.increment();
+
+        return resolved;
+    }
+
+    /**
+     * 删除当前请求中保存的值，下次获取时重新计算 (例如请求中修改了机构)
+     *
+     * @param name 值的名字
+     */
+    public static void remove(String name) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        if (attributes != null) {
+            attributes.removeAttribute(name, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * 获取实际计算的次数
+     *
+     * @return 返回次数
+     */
+    public static long getResolvedCount() {
+        return resolvedCount.sum();
+    }
+
+    /**
+     * 获取从请求中直接返回、省去计算的次数
+     *
+     * @return 返回次数
+     */
+    public static long getAvoidedCount() {
+        return avoidedCount.sum();
+    }
+}
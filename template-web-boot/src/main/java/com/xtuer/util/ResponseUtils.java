@@ -1,6 +1,10 @@
 package com.xtuer.util;
 
 import com.xtuer.bean.Mime;
+import com.xtuer.service.AsyncFileSender;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -8,6 +12,7 @@ import org.apache.commons.lang3.StringUtils;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
@@ -21,16 +26,33 @@ import java.util.List;
 /**
  * HttpServletResponse 响应访问文件的工具类，支持普通访问，同时支持 range。
  *
+ * 整个文件和单个 range 的响应优先使用 Tomcat 的 sendfile (零拷贝): 只设置 request 的 sendfile 属性，
+ * 由 Tomcat 在请求结束后使用 FileChannel.transferTo() 把文件直接从内核发送到 socket，文件内容不经过 Java 堆。
+ * 容器不支持 sendfile (例如开启了 gzip 压缩) 或者文件很小时，传入了 AsyncFileSender 则使用非阻塞 IO 异步发送 (不占用请求线程)，
+ * 否则使用缓冲区复制到 response 的输出流。
+ *
+ * 支持条件请求: ETag 为文件的大小和修改时间，Last-Modified 为文件的修改时间，
+ * 请求的 If-None-Match 或者 If-Modified-Since 表明浏览器缓存的文件没有变化时返回 304，不发送文件。
+ *
+ * 前端有 nginx 或者 Apache 时可以使用 offloadFileToResponse() 只返回 X-Accel-Redirect 或者 X-Sendfile 响应头，由代理服务器发送文件。
+ *
  * 参考: How to Implement HTTP byte-range requests in Spring MVC
  * 网址: https://stackoverflow.com/questions/28427339/how-to-implement-http-byte-range-requests-in-spring-mvc
  */
 @Slf4j
 public final class ResponseUtils {
-    private static final int DEFAULT_BUFFER_SIZE   = 2097152; // bytes = 2MB
+    private static final int DEFAULT_BUFFER_SIZE   = 65536; // bytes = 64KB
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
 
+    // Tomcat 的 sendfile 属性 (org.apache.catalina.Globals)，end 不包含在内
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME  = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START     = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END       = "org.apache.tomcat.sendfile.end";
+    private static final long   SENDFILE_MIN_SIZE  = 48 * 1024; // 小于 48KB 的数据直接复制更快 (和 Tomcat 的 DefaultServlet 相同)
+
     /**
-     * 读取文件到 response
+     * 读取文件到 response，不设置 Cache-Control
      *
      * @param path     // 文件的路径
      * @param filename // 文件名，因为文件的路径中的文件名是编码过的，而真实的文件名保存在数据库，所以 path 中的文件名很可能不是真正的文件名
@@ -39,8 +61,53 @@ public final class ResponseUtils {
      * @throws IOException 访问文件发生异常时抛出
      */
     public static void readFileToResponse(String path, String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        readFileToResponse(path, filename, null, request, response);
+    }
+
+    /**
+     * 读取文件到 response，同步发送
+     *
+     * @param path         // 文件的路径
+     * @param filename     // 文件名，因为文件的路径中的文件名是编码过的，而真实的文件名保存在数据库，所以 path 中的文件名很可能不是真正的文件名
+     * @param cacheControl // 响应头 Cache-Control 的值，例如 "public, max-age=31536000, immutable"，为 null 时不设置
+     * @param request      // HttpServletRequest 对象
+     * @param response     // HttpServletResponse 对象
+     * @throws IOException 访问文件发生异常时抛出
+     */
+    public static void readFileToResponse(String path, String filename, String cacheControl,
+                                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        readFileToResponse(path, filename, cacheControl, null, request, response);
+    }
+
+    /**
+     * 读取文件到 response
+     *
+     * @param path         // 文件的路径
+     * @param filename     // 文件名，因为文件的路径中的文件名是编码过的，而真实的文件名保存在数据库，所以 path 中的文件名很可能不是真正的文件名
+     * @param cacheControl // 响应头 Cache-Control 的值，例如 "public, max-age=31536000, immutable"，为 null 时不设置
+     * @param sender       // 异步发送文件的对象，为 null 或者请求不支持异步时同步发送
+     * @param request      // HttpServletRequest 对象
+     * @param response     // HttpServletResponse 对象
+     * @throws IOException 访问文件发生异常时抛出
+     */
+    public static void readFileToResponse(String path, String filename, String cacheControl, AsyncFileSender sender,
+                                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        readFileToResponse(path, new Options().setFilename(filename).setCacheControl(cacheControl).setSender(sender), request, response);
+    }
+
+    /**
+     * 读取文件到 response
+     *
+     * @param path     // 文件的路径，options.contentEncoding 不为空时为压缩后的文件
+     * @param options  // 文件名、Cache-Control、异步发送、压缩等选项
+     * @param request  // HttpServletRequest 对象
+     * @param response // HttpServletResponse 对象
+     * @throws IOException 访问文件发生异常时抛出
+     */
+    public static void readFileToResponse(String path, Options options, HttpServletRequest request, HttpServletResponse response) throws IOException {
         // 1. 如果文件不存在则返回 404 页面
-        // 2. 如果 header 中有 Range，则校验和处理 Range
+        //    1.1 如果浏览器缓存的文件没有变化 (If-None-Match 或者 If-Modified-Since)，则返回 304
+        // 2. 如果 header 中有 Range，则校验和处理 Range (发送压缩后的文件时忽略 Range，返回整个文件)
         //    2.1 Range 头的格式为 "bytes=n-n,n-n,n-n...". 如果不匹配，则返回 416
         //    2.2 处理 If-Range 头
         //    2.3 如果没有有效的 If-Range 头, 则处理 Range 中的每一部分，使用逗号分隔
@@ -51,6 +118,7 @@ public final class ResponseUtils {
         //    4.1 ranges 为空或者只有一个元素并为 fullRange 时，则读取整个文件 (fullRange 为处理 If-Range 头得到的)
         //    4.2 ranges 只有一个元素并不为 fullRange 时，读取文件的部分，范围由 ranges.get(0) 指定
         //    4.3 ranges 有多个元素时，读取文件的多个部分，范围由 ranges 指定
+        //    4.1 和 4.2 优先使用 sendfile，由 Tomcat 发送文件，其次使用 sender 异步发送
 
         // [1] 如果文件不存在则返回 404 页面
         if (!Files.exists(Paths.get(path))) {
@@ -59,11 +127,27 @@ public final class ResponseUtils {
             return;
         }
 
-        filename = StringUtils.isBlank(filename) ? FilenameUtils.getName(path) : filename; // 传入的文件名为空时取 path 中的文件名
-        long        length    = Files.size(Paths.get(path));      // 文件的长度
-        Range       fullRange = new Range(0, length - 1, length); // 整个文件的 range
-        String      range     = request.getHeader("Range");
-        List<Range> ranges    = new ArrayList<>();
+        String          filename     = StringUtils.isBlank(options.filename) ? FilenameUtils.getName(path) : options.filename; // 传入的文件名为空时取 path 中的文件名
+        String          encoding     = options.contentEncoding; // 压缩格式，为 null 时表示没有压缩
+        String          cacheControl = options.cacheControl;
+        AsyncFileSender sender       = options.sender;
+        long            length       = Files.size(Paths.get(path));      // 文件的长度
+        long            modified     = Files.getLastModifiedTime(Paths.get(path)).toMillis() / 1000 * 1000; // 修改时间，HTTP 的时间精确到秒
+        String          etag         = "\"" + Long.toHexString(length) + "-" + Long.toHexString(modified) + "\"";
+        Range           fullRange    = new Range(0, length - 1, length); // 整个文件的 range
+        String          range        = encoding == null ? request.getHeader("Range") : null;
+        List<Range>     ranges       = new ArrayList<>();
+
+        // [1.1] 如果浏览器缓存的文件没有变化 (If-None-Match 或者 If-Modified-Since)，则返回 304
+        if (HttpUtils.notModified(request, etag, modified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            setCacheHeaders(response, etag, modified, cacheControl);
+
+            if (options.varyAcceptEncoding) {
+                response.setHeader("Vary", "Accept-Encoding");
+            }
+            return;
+        }
 
         // [2] 如果 header 中有 Range，则校验和处理 Range
         if (range != null) {
@@ -78,12 +162,12 @@ public final class ResponseUtils {
                 return;
             }
 
-            // [2.2] 处理 If-Range 头
+            // [2.2] 处理 If-Range 头: ETag 或者时间和当前文件不匹配时返回整个文件
             String ifRange = request.getHeader("If-Range");
-            if (ifRange != null && !ifRange.equals(FilenameUtils.getName(path))) {
+            if (ifRange != null && !ifRange.equals(etag)) {
                 try {
                     long ifRangeTime = request.getDateHeader("If-Range"); // Throws IAE if invalid.
-                    if (ifRangeTime != -1) {
+                    if (ifRangeTime == -1 || ifRangeTime < modified) {
                         ranges.add(fullRange);
                     }
                 } catch (IllegalArgumentException ignore) {
@@ -135,63 +219,183 @@ public final class ResponseUtils {
         // [3] 设置响应头
         // [3.1] 使用文件名获取 content type 和 content disposition
         String contentType = Mime.getContentType(filename);
-        String disposition = "inline";
-        if (!contentType.startsWith("image")) {
-            // Expect for images, determine content disposition. If content type is supported by
-            // the browser, then set to inline, else attachment which will pop a 'save as' dialogue.
-            String accept = request.getHeader("Accept");
-            disposition = (accept != null && HttpUtils.accepts(accept, contentType)) ? "inline" : "attachment";
-        }
-
-        filename = new String(filename.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1); // 解决文件名乱码问题
+        String disposition = contentDisposition(filename, contentType, request);
 
         // [3.2] 初始化 response，设置响应头
         response.reset(); // Initialize response.
         response.setBufferSize(DEFAULT_BUFFER_SIZE);
         response.setHeader("Content-Type", contentType);
-        response.setHeader("Content-Disposition", disposition + ";filename=\"" + filename + "\"");
-        response.setHeader("Accept-Ranges", "bytes");
-        response.setHeader("ETag", filename);
+        response.setHeader("Content-Disposition", disposition);
+        response.setHeader("Accept-Ranges", encoding == null ? "bytes" : "none");
+        setCacheHeaders(response, etag, modified, cacheControl);
+
+        if (encoding != null) {
+            response.setHeader("Content-Encoding", encoding);
+        }
+        if (options.varyAcceptEncoding) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
 
         // [4] 根据 ranges 读取文件到 response
-        try (RandomAccessFile input = new RandomAccessFile(path, "r"); ServletOutputStream output = response.getOutputStream()) {
-            if (ranges.isEmpty() || ranges.get(0) == fullRange) {
+        if (ranges.isEmpty() || ranges.size() == 1) {
+            Range r = ranges.isEmpty() ? fullRange : ranges.get(0);
+
+            if (r == fullRange) {
                 // [4.1] ranges 为空或者只有一个元素并为 fullRange 时，则读取整个文件 (fullRange 为处理 If-Range 头得到的)
                 log.debug("返回整个文件: {}", path);
-
-                response.setHeader("Content-Range", "bytes " + fullRange.start + "-" + fullRange.end + "/" + fullRange.total);
-                response.setHeader("Content-Length", String.valueOf(fullRange.length));
-                Range.copy(input, output, length, fullRange.start, fullRange.length);
-            } else if (ranges.size() == 1) {
+            } else {
                 // [4.2] ranges 只有一个元素并不为 fullRange 时，读取文件的部分，范围由 ranges.get(0) 指定
-                Range r = ranges.get(0);
                 log.debug("返回文件的一个部分 : from ({}) to ({}), Path: {}", r.start, r.end, path);
-
-                response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total); // Content-Range: bytes 0-17611749/17611750
-                response.setHeader("Content-Length", String.valueOf(r.length));
-                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT); // 206.
-                Range.copy(input, output, length, r.start, r.length); // Copy single part range.
-            } else {
-                // [4.3] ranges 有多个元素时，读取文件的多个部分，范围由 ranges 指定
-                response.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
                 response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT); // 206.
+            }
 
-                // Copy multi part range.
-                for (Range r : ranges) {
-                    log.debug("返回文件的多个部分: from ({}) to ({}), Path: {}", r.start, r.end, path);
+            response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total); // Content-Range: bytes 0-17611749/17611750
+            response.setHeader("Content-Length", String.valueOf(r.length));
 
-                    // Add multipart boundary and header fields for every range.
-                    output.println();
-                    output.println("--" + MULTIPART_BOUNDARY);
-                    output.println("Content-Type: " + contentType);
-                    output.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
-                    Range.copy(input, output, length, r.start, r.length); // Copy single part range of multi part range.
-                }
+            if (sendfile(path, r, request)) {
+                return;
+            }
+
+            if (sender != null && sender.isEnabled(request)) {
+                sender.send(path, r.start, r.length, request, response);
+                return;
+            }
+
+            try (RandomAccessFile input = new RandomAccessFile(path, "r"); ServletOutputStream output = response.getOutputStream()) {
+                Range.copy(input, output, length, r.start, r.length);
+            }
+
+            return;
+        }
 
-                // End with multipart boundary.
+        // [4.3] ranges 有多个元素时，读取文件的多个部分，范围由 ranges 指定
+        try (RandomAccessFile input = new RandomAccessFile(path, "r"); ServletOutputStream output = response.getOutputStream()) {
+            response.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT); // 206.
+
+            // Copy multi part range.
+            for (Range r : ranges) {
+                log.debug("返回文件的多个部分: from ({}) to ({}), Path: {}", r.start, r.end, path);
+
+                // Add multipart boundary and header fields for every range.
                 output.println();
-                output.println("--" + MULTIPART_BOUNDARY + "--");
+                output.println("--" + MULTIPART_BOUNDARY);
+                output.println("Content-Type: " + contentType);
+                output.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
+                Range.copy(input, output, length, r.start, r.length); // Copy single part range of multi part range.
             }
+
+            // End with multipart boundary.
+            output.println();
+            output.println("--" + MULTIPART_BOUNDARY + "--");
+        }
+    }
+
+    /**
+     * 把文件交给前端的代理服务器发送: 只设置文件名、Content-Type、Cache-Control 和 offload 的响应头，不写响应体，
+     * 由 nginx (X-Accel-Redirect) 或者 Apache (X-Sendfile) 读取文件发送给浏览器，Range、ETag 和 304 也由代理服务器处理。
+     *
+     * @param path     // 文件的路径，用于判断文件是否存在
+     * @param location // 代理服务器访问文件的位置: nginx 为 internal location 的 URI，Apache 为文件的绝对路径
+     * @param offload  // 代理服务器的类型
+     * @param options  // 文件名、Cache-Control 等选项 (sender 和 contentEncoding 不使用)
+     * @param request  // HttpServletRequest 对象
+     * @param response // HttpServletResponse 对象
+     * @throws IOException 文件不存在返回 404 出错时抛出
+     */
+    public static void offloadFileToResponse(String path, String location, Offload offload, Options options,
+                                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 文件不存在时返回 404，不交给代理服务器
+        if (!Files.exists(Paths.get(path))) {
+            log.warn("文件 {} 不存在", path);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String filename    = StringUtils.isBlank(options.filename) ? FilenameUtils.getName(path) : options.filename;
+        String contentType = Mime.getContentType(filename);
+
+        response.setHeader("Content-Type", contentType);
+        response.setHeader("Content-Disposition", contentDisposition(filename, contentType, request));
+        response.setHeader(offload.getHeader(), location);
+
+        if (options.cacheControl != null) {
+            response.setHeader("Cache-Control", options.cacheControl);
+        }
+    }
+
+    /**
+     * 获取响应头 Content-Disposition 的值: 图片和浏览器支持的类型为 inline，否则为 attachment 弹出保存对话框
+     */
+    private static String contentDisposition(String filename, String contentType, HttpServletRequest request) {
+        String disposition = "inline";
+        if (!contentType.startsWith("image")) {
+            // Expect for images, determine content disposition. If content type is supported by
+            // the browser, then set to inline, else attachment which will pop a 'save as' dialogue.
+            String accept = request.getHeader("Accept");
+            disposition = (accept != null && HttpUtils.accepts(accept, contentType)) ? "inline" : "attachment";
+        }
+
+        filename = new String(filename.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1); // 解决文件名乱码问题
+        return disposition + ";filename=\"" + filename + "\"";
+    }
+
+    /**
+     * 设置缓存相关的响应头: ETag, Last-Modified, Cache-Control
+     */
+    private static void setCacheHeaders(HttpServletResponse response, String etag, long modified, String cacheControl) {
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", modified);
+
+        if (cacheControl != null) {
+            response.setHeader("Cache-Control", cacheControl);
+        }
+    }
+
+    /**
+     * 容器支持 sendfile 时设置 request 的 sendfile 属性，请求结束后由 Tomcat 直接发送文件，调用者不能再写 response 的输出流
+     *
+     * @return 使用 sendfile 时返回 true，否则返回 false
+     */
+    private static boolean sendfile(String path, Range range, HttpServletRequest request) throws IOException {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) || range.length < SENDFILE_MIN_SIZE) {
+            return false;
+        }
+
+        request.setAttribute(SENDFILE_FILENAME, new File(path).getCanonicalPath());
+        request.setAttribute(SENDFILE_START, range.start);
+        request.setAttribute(SENDFILE_END, range.end + 1);
+
+        return true;
+    }
+
+    /**
+     * 读取文件到 response 的选项
+     */
+    @Getter
+    @Setter
+    @Accessors(chain = true)
+    public static class Options {
+        private String filename;            // 文件名，为空时使用 path 中的文件名
+        private String cacheControl;        // 响应头 Cache-Control 的值，为 null 时不设置
+        private AsyncFileSender sender;     // 异步发送文件的对象，为 null 时同步发送
+        private String contentEncoding;     // 文件的压缩格式，例如 gzip，发送压缩后的文件时设置
+        private boolean varyAcceptEncoding; // 是否设置 Vary: Accept-Encoding (文件会根据 Accept-Encoding 压缩时设置)
+    }
+
+    /**
+     * 由前端的代理服务器发送文件时使用的响应头
+     */
+    @Getter
+    public enum Offload {
+        NONE(null),                 // 由 Java 发送文件
+        NGINX("X-Accel-Redirect"),  // nginx 的 internal location
+        APACHE("X-Sendfile");       // Apache 的 mod_xsendfile
+
+        private final String header;
+
+        Offload(String header) {
+            this.header = header;
         }
     }
 
@@ -241,7 +445,6 @@ public final class ResponseUtils {
                 // Write full range.
                 while ((read = input.read(buffer)) > 0) {
                     output.write(buffer, 0, read);
-                    output.flush();
                 }
             } else {
                 input.seek(start);
@@ -250,10 +453,8 @@ public final class ResponseUtils {
                 while ((read = input.read(buffer)) > 0) {
                     if ((toRead -= read) > 0) {
                         output.write(buffer, 0, read);
-                        output.flush();
                     } else {
                         output.write(buffer, 0, (int) toRead + read);
-                        output.flush();
                         break;
                     }
                 }
@@ -262,6 +463,30 @@ public final class ResponseUtils {
     }
 
     private static class HttpUtils {
+        /**
+         * 判断浏览器缓存的文件是否没有变化: 有 If-None-Match 时只使用它判断，否则使用 If-Modified-Since 判断
+         *
+         * @param request      HttpServletRequest 对象
+         * @param etag         文件当前的 ETag
+         * @param lastModified 文件当前的修改时间
+         * @return 没有变化返回 true，否则返回 false
+         */
+        public static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+            String ifNoneMatch = request.getHeader("If-None-Match");
+
+            if (ifNoneMatch != null) {
+                // 弱比较: 忽略 W/ 前缀
+                return matches(ifNoneMatch.replace("W/", ""), etag);
+            }
+
+            try {
+                long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+                return ifModifiedSince != -1 && ifModifiedSince >= lastModified;
+            } catch (IllegalArgumentException ex) {
+                return false;
+            }
+        }
+
         /**
          * Returns true if the given accept header accepts the given value.
          *
@@ -0,0 +1,173 @@
+package com.xtuer.util;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * <pre>
+ * Snowflake ID 的编解码器: 从 ID 中解析出时间截、数据中心 ID、机器 ID 和序列，以及把时间范围 [from, to) 转换为 ID 范围 [minId, maxId]。
+ *
+ * Snowflake ID 的高位是时间截，所以 ID 的顺序就是创建时间的顺序，按创建时间查询时可以使用主键的范围查询:
+ *     WHERE id BETWEEN #{minId} AND #{maxId}
+ * 主键是聚簇索引，范围查询只需要顺序扫描一段连续的数据，不再需要创建时间的二级索引。
+ *
+ * 支持两种 ID 的结构:
+ *     ID_WORKER: IdWorker 生成的 ID，1 位符号位 + 41 位时间截(毫秒) + 5 位数据中心 ID + 5 位机器 ID + 12 位序列
+ *     uidGenerator(): CachedUidGenerator 生成的 ID，1 位符号位 + timeBits 位时间截(秒) + workerBits 位机器 ID + seqBits 位序列
+ * 时间截的单位是秒时，时间范围的精度也是秒，from 所在的那一秒中早于 from 的 ID 也在范围内。
+ * </pre>
+ */
+public final class SnowflakeIdCodec {
+    /** IdWorker 生成的 ID 的编解码器 */
+    public static final SnowflakeIdCodec ID_WORKER = new SnowflakeIdCodec(1483228800000L, 1, 41, 5, 5, 12);
+
+    private final long epoch;         // 开始时间截，单位毫秒
+    private final long timeUnit;      // 时间截的单位，单位毫秒
+    private final long maxTimestamp;  // 时间截的最大值 (相对 epoch 的时间单位数)
+    private final int  datacenterShift;
+    private final int  workerShift;
+    private final int  timestampShift;
+    private final long datacenterMask;
+    private final long workerMask;
+    private final long sequenceMask;
+
+    /**
+     * 使用 ID 的结构创建编解码器，timestampBits + datacenterBits + workerBits + sequenceBits 最多 63 位
+     *
+     * @param epoch          开始时间截，单位毫秒
+     * @param timeUnit       时间截的单位，单位毫秒，例如 1 表示毫秒，1000 表示秒
+     * @param timestampBits  时间截的位数
+     * @param datacenterBits 数据中心 ID 的位数，没有数据中心 ID 时为 0
+     * @param workerBits     机器 ID 的位数
+     * @param sequenceBits   序列的位数
+     */
+    public SnowflakeIdCodec(long epoch, long timeUnit, int timestampBits, int datacenterBits, int workerBits, int sequenceBits) {
+        if (timeUnit <= 0) {
+            throw new IllegalArgumentException(String.format("Time unit must be greater than 0: %d", timeUnit));
+        }
+        if (timestampBits + datacenterBits + workerBits + sequenceBits > 63) {
+            throw new IllegalArgumentException("Total bits of ID can't be greater than 63");
+        }
+
+        this.epoch           = epoch;
+        this.timeUnit        = timeUnit;
+        this.maxTimestamp    = ~(-1L << timestampBits);
+        this.workerShift     = sequenceBits;
+        this.datacenterShift = sequenceBits + workerBits;
+        this.timestampShift  = sequenceBits + workerBits + datacenterBits;
+        this.datacenterMask  = ~(-1L << datacenterBits);
+        this.workerMask      = ~(-1L << workerBits);
+        this.sequenceMask    = ~(-1L << sequenceBits);
+    }
+
+    /**
+     * 创建 CachedUidGenerator 生成的 ID 的编解码器，参数和配置 uid 下的属性相同
+     *
+     * @param epochStr   开始日期，格式为 yyyy-MM-dd
+     * @param timeBits   时间截的位数，单位秒
+     * @param workerBits 机器 ID 的位数
+     * @param seqBits    序列的位数
+     * @return 返回编解码器
+     */
+    public static SnowflakeIdCodec uidGenerator(String epochStr, int timeBits, int workerBits, int seqBits) {
+        long epoch = LocalDate.parse(epochStr).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new SnowflakeIdCodec(epoch, 1000, timeBits, 0, workerBits, seqBits);
+    }
+
+    /**
+     * 解析 ID 的时间截
+     *
+     * @param id Snowflake ID
+     * @return 返回生成 ID 的时间，单位毫秒
+     */
+    public long timestamp(long id) {
+        return (id >>> timestampShift) * timeUnit + epoch;
+    }
+
+    /**
+     * 解析 ID 的创建时间
+     *
+     * @param id Snowflake ID
+     * @return 返回生成 ID 的时间
+     */
+    public Date createdAt(long id) {
+        return new Date(timestamp(id));
+    }
+
+    /**
+     * 解析 ID 的数据中心 ID
+     *
+     * @param id Snowflake ID
+     * @return 返回数据中心 ID，没有数据中心 ID 时返回 0
+     */
+    public long datacenterId(long id) {
+        return (id >>> datacenterShift) & datacenterMask;
+    }
+
+    /**
+     * 解析 ID 的机器 ID
+     *
+     * @param id Snowflake ID
+     * @return 返回机器 ID
+     */
+    public long workerId(long id) {
+        return (id >>> workerShift) & workerMask;
+    }
+
+    /**
+     * 解析 ID 的毫秒内 (或者秒内) 序列
+     *
+     * @param id Snowflake ID
+     * @return 返回序列
+     */
+    public long sequence(long id) {
+        return id & sequenceMask;
+    }
+
+    /**
+     * 时间 from 及之后生成的 ID 中最小的 ID
+     *
+     * @param from 开始时间
+     * @return 返回最小的 ID
+     */
+    public long minId(Date from) {
+        long units = Math.floorDiv(from.getTime() - epoch, timeUnit);
+        return clamp(units) << timestampShift;
+    }
+
+    /**
+     * 时间 to 之前生成的 ID 中最大的 ID，to 早于开始时间时返回 -1
+     *
+     * @param to 结束时间 (不包含)
+     * @return 返回最大的 ID
+     */
+    public long maxId(Date to) {
+        long units = Math.floorDiv(to.getTime() - epoch + timeUnit - 1, timeUnit);
+
+        if (units > maxTimestamp) {
+            // 超过了时间截的最大值，所有时间截都在范围内
+            return ((maxTimestamp << timestampShift) | ~(-1L << timestampShift));
+        }
+
+        return (clamp(units) << timestampShift) - 1;
+    }
+
+    /**
+     * 把时间范围 [from, to) 转换为 ID 范围 [minId, maxId]，minId > maxId 时范围为空
+     *
+     * @param from 开始时间 (包含)
+     * @param to   结束时间 (不包含)
+     * @return 返回数组 [minId, maxId]
+     */
+    public long[] idRange(Date from, Date to) {
+        return new long[] { minId(from), maxId(to) };
+    }
+
+    /**
+     * 把时间截限制在 [0, maxTimestamp] 之间
+     */
+    private long clamp(long units) {
+        return Math.max(0, Math.min(units, maxTimestamp));
+    }
+}
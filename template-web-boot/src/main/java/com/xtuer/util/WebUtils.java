@@ -246,11 +246,18 @@ public final class WebUtils {
     }
 
     /**
-     * 获取当前请求的 Host
+     * 获取当前请求的 Host (简化后的域名)，一次请求中只解析一次
      *
      * @return 请求的 host
      */
     public static String getHost() {
+        return RequestContext.get(RequestContext.HOST, WebUtils::parseHost);
+    }
+
+    /**
+     * 从当前请求的 URL 中解析出 Host
+     */
+    private static String parseHost() {
         try {
             String host = new URL(WebUtils.getRequest().getRequestURL().toString()).getHost();
             return WebUtils.simplifyHost(host);
@@ -312,6 +319,17 @@ public final class WebUtils {
         readFileToResponse(file.getAbsolutePath(), file.getName(), WebUtils.getRequest(), response);
     }
 
+    /**
+     * 读取文件到 HttpServletResponse，并设置 Cache-Control
+     *
+     * @param file         文件
+     * @param cacheControl 响应头 Cache-Control 的值，为 null 时不设置
+     * @param response     HttpServletResponse 对象
+     */
+    public static void readFileToResponse(File file, String cacheControl, HttpServletResponse response) throws IOException {
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), file.getName(), cacheControl, WebUtils.getRequest(), response);
+    }
+
     /**
      * 读取文件到 HttpServletResponse
      *
@@ -0,0 +1,263 @@
+import com.xtuer.config.AppConfig;
+import com.xtuer.service.AsyncFileSender;
+import com.xtuer.util.ResponseUtils;
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ * 使用内嵌的 Tomcat 模拟慢速的客户端 (每 20 毫秒读取 1KB)，比较同步和异步发送文件时被占用的请求线程数 (benchmark):
+ *     同步: 每个下载占用一个请求线程，直到文件发送完
+ *     异步: 请求线程调用 startAsync() 后立即返回，只有 socket 可写时才使用 IO 线程写一块数据
+ * 关闭 Tomcat 的 sendfile，让 ResponseUtils 使用复制或者异步发送。
+ * 默认的 test 任务中测试异步发送的完整性: 完整下载、客户端不再接收时的空闲超时、客户端断开。
+ * </pre>
+ */
+public class AsyncFileSenderTest {
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+    private static final int CLIENTS   = 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @Tag("benchmark") // 依赖计时，耗时较长，使用 gradle benchmark 运行
+    public void threadOccupancy() throws Exception {
+        Path file = dir.resolve("video.mp4");
+        Files.write(file, new byte[FILE_SIZE]);
+
+        int sync  = busyThreadsWithSlowClients(file, false);
+        int async = busyThreadsWithSlowClients(file, true);
+
+        System.out.printf("%-8s %-20s%n", "Mode", "Busy request threads");
+        System.out.printf("%-8s %-20d%n", "sync", sync);
+        System.out.printf("%-8s %-20d%n", "async", async);
+
+        Assertions.assertTrue(sync >= CLIENTS / 2, "同步发送时慢速的客户端应该占用请求线程");
+        Assertions.assertEquals(0, async, "异步发送时不应该占用请求线程");
+    }
+
+    @Test
+    public void asyncDownloadIsComplete() throws Exception {
+        Path file = dir.resolve("video.mp4");
+        Files.write(file, new byte[FILE_SIZE]);
+
+        AsyncFileSender sender = sender(60_000);
+        Tomcat tomcat = start(file, sender, new AtomicInteger());
+
+        try (Socket socket = request(tomcat)) {
+            long received = 0;
+            byte[] buffer = new byte[65536];
+            int read;
+            InputStream input = socket.getInputStream();
+
+            while ((read = input.read(buffer)) > 0) {
+                received += read;
+            }
+
+            // 响应头 + 文件
+            Assertions.assertTrue(received > FILE_SIZE && received < FILE_SIZE + 2048);
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+            sender.destroy();
+        }
+
+        Assertions.assertEquals(1, sender.getCompletedCount());
+        Assertions.assertEquals(FILE_SIZE, sender.getSentBytes());
+        Assertions.assertEquals(0, sender.getActiveCount());
+    }
+
+    @Test
+    public void idleTimeout() throws Exception {
+        // 客户端不再接收时，超过空闲时间没有写出数据则结束下载
+        Path file = dir.resolve("video.mp4");
+        Files.write(file, new byte[FILE_SIZE]);
+
+        AsyncFileSender sender = sender(500);
+        Tomcat tomcat = start(file, sender, new AtomicInteger());
+
+        try (Socket ignored = request(tomcat)) {
+            waitUntilFinished(sender);
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+            sender.destroy();
+        }
+
+        Assertions.assertEquals(1, sender.getFailedCount());
+        Assertions.assertEquals(0, sender.getActiveCount());
+        Assertions.assertTrue(sender.getSentBytes() > 0 && sender.getSentBytes() < FILE_SIZE);
+    }
+
+    @Test
+    public void clientDisconnect() throws Exception {
+        // 客户端接收一部分后断开，结束下载并关闭文件
+        Path file = dir.resolve("video.mp4");
+        Files.write(file, new byte[FILE_SIZE]);
+
+        AsyncFileSender sender = sender(60_000);
+        Tomcat tomcat = start(file, sender, new AtomicInteger());
+
+        try {
+            try (Socket socket = request(tomcat)) {
+                Assertions.assertTrue(socket.getInputStream().read(new byte[65536]) > 0);
+            }
+
+            waitUntilFinished(sender);
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+            sender.destroy();
+        }
+
+        Assertions.assertEquals(0, sender.getCompletedCount());
+        Assertions.assertEquals(1, sender.getFailedCount());
+        Assertions.assertEquals(0, sender.getActiveCount());
+    }
+
+    /**
+     * 等待发送结束 (完成或者失败)，最多等待 10 秒
+     */
+    private static void waitUntilFinished(AsyncFileSender sender) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+
+        while (sender.getCompletedCount() + sender.getFailedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * CLIENTS 个慢速的客户端同时下载文件，返回下载过程中正在执行 service() 的请求线程数
+     */
+    private int busyThreadsWithSlowClients(Path file, boolean async) throws Exception {
+        AtomicInteger busy = new AtomicInteger();
+        AsyncFileSender sender = async ? sender(60_000) : null;
+        Tomcat tomcat = start(file, sender, busy);
+        List<Socket> sockets = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < CLIENTS; i++) {
+                Socket socket = request(tomcat);
+                sockets.add(socket);
+
+                Thread reader = new Thread(() -> slowRead(socket));
+                reader.setDaemon(true);
+                reader.start();
+                readers.add(reader);
+            }
+
+            Thread.sleep(1500);
+            return busy.get();
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            for (Thread reader : readers) {
+                reader.join(5000);
+            }
+
+            tomcat.stop();
+            tomcat.destroy();
+
+            if (sender != null) {
+                sender.destroy();
+            }
+        }
+    }
+
+    private Tomcat start(Path file, AsyncFileSender sender, AtomicInteger busy) throws Exception {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(dir.resolve("tomcat").toString());
+
+        Connector connector = new Connector();
+        connector.setPort(0);
+        connector.setProperty("maxThreads", String.valueOf(CLIENTS * 2));
+        connector.setProperty("useSendfile", "false");
+        tomcat.setConnector(connector);
+
+        Context context = tomcat.addContext("", dir.toString());
+        Wrapper wrapper = Tomcat.addServlet(context, "file", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                busy.incrementAndGet();
+
+                try {
+                    ResponseUtils.readFileToResponse(file.toString(), "video.mp4", null, sender, request, response);
+                } finally {
+                    busy.decrementAndGet();
+                }
+            }
+        });
+        wrapper.setAsyncSupported(true);
+        context.addServletMappingDecoded("/file", "file");
+        tomcat.start();
+
+        return tomcat;
+    }
+
+    /**
+     * 创建异步发送文件的对象，idleTimeout 为空闲超时时间，单位毫秒
+     */
+    private static AsyncFileSender sender(long idleTimeout) {
+        AppConfig config = new AppConfig();
+        config.setFileAsyncEnabled(true);
+        config.setFileAsyncThreads(2);
+        config.setFileAsyncTimeout(idleTimeout);
+
+        return new AsyncFileSender(config);
+    }
+
+    /**
+     * 连接 Tomcat 并发送下载文件的请求，接收缓冲区很小，模拟慢速网络
+     */
+    private static Socket request(Tomcat tomcat) throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(16 * 1024);
+        socket.connect(new InetSocketAddress("127.0.0.1", tomcat.getConnector().getLocalPort()));
+
+        OutputStream output = socket.getOutputStream();
+        output.write("GET /file HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+
+        return socket;
+    }
+
+    /**
+     * 每 20 毫秒读取 1KB，直到 socket 被关闭
+     */
+    private static void slowRead(Socket socket) {
+        byte[] buffer = new byte[1024];
+
+        try {
+            InputStream input = socket.getInputStream();
+            while (input.read(buffer) > 0) {
+                Thread.sleep(20);
+            }
+        } catch (IOException | InterruptedException ignore) {
+            // 测试结束时关闭 socket
+        }
+    }
+}
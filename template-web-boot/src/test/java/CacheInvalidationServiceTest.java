@@ -0,0 +1,54 @@
+import com.alicp.jetcache.Cache;
+import com.xtuer.service.CacheInvalidationService;
+import com.xtuer.service.LocalCacheInvalidationBus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 使用进程内的广播通道模拟 2 个节点，测试一个节点修改数据后另一个节点的本地缓存被删除
+ */
+public class CacheInvalidationServiceTest {
+    private Cache<String, Object> cache1;
+    private Cache<String, Object> cache2;
+    private CacheInvalidationService node1;
+    private CacheInvalidationService node2;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        LocalCacheInvalidationBus bus = new LocalCacheInvalidationBus();
+        cache1 = Mockito.mock(Cache.class);
+        cache2 = Mockito.mock(Cache.class);
+        node1  = node(bus, cache1);
+        node2  = node(bus, cache2);
+    }
+
+    @Test
+    public void invalidateOnAllNodes() {
+        node1.invalidate("user.1");
+
+        // 当前节点删除一次 (本地和 Redis)，不处理自己发出的消息，另一个节点删除本地缓存
+        Mockito.verify(cache1, Mockito.times(1)).remove("user.1");
+        Mockito.verify(cache2, Mockito.times(1)).remove("user.1");
+        Assertions.assertEquals(1, node1.getPublishedCount());
+        Assertions.assertEquals(0, node1.getReceivedCount());
+        Assertions.assertEquals(1, node2.getReceivedCount());
+    }
+
+    @Test
+    public void keyWithSpaces() {
+        node2.invalidate("org.a b");
+        Mockito.verify(cache1).remove("org.a b");
+    }
+
+    private static CacheInvalidationService node(LocalCacheInvalidationBus bus, Cache<String, Object> cache) {
+        CacheInvalidationService service = new CacheInvalidationService(bus);
+        ReflectionTestUtils.setField(service, "cache", cache);
+        service.start();
+
+        return service;
+    }
+}
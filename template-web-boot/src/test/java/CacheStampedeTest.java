@@ -0,0 +1,199 @@
+import com.alicp.jetcache.CacheBuilder;
+import com.alicp.jetcache.anno.config.EnableCreateCacheAnnotation;
+import com.alicp.jetcache.anno.config.EnableMethodCache;
+import com.alicp.jetcache.anno.support.GlobalCacheConfig;
+import com.alicp.jetcache.anno.support.SpringConfigProvider;
+import com.alicp.jetcache.embedded.CaffeineCacheBuilder;
+import com.alicp.jetcache.embedded.EmbeddedCacheConfig;
+import com.alicp.jetcache.embedded.LinkedHashMapCache;
+import com.alicp.jetcache.external.ExternalCacheBuilder;
+import com.alicp.jetcache.support.FastjsonKeyConvertor;
+import com.github.wujun234.uid.impl.CachedUidGenerator;
+import com.xtuer.bean.Organization;
+import com.xtuer.bean.User;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.OrganizationMapper;
+import com.xtuer.mapper.UserMapper;
+import com.xtuer.security.JwtService;
+import com.xtuer.service.*;
+import com.xtuer.util.SnowflakeIdCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ * 测试缓存击穿 (stampede): 热点 key 未命中时大量并发请求同时访问。
+ * 通过 JetCache 生成的代理调用 OrganizationService.findOrganizationByHost 和 UserService.findUser (@Cached + @CachePenetrationProtect):
+ *     1. 并发加载同一个 key 时只调用一次 Mapper (只查询一次数据库)
+ *     2. 加载后的请求命中缓存，不再调用 Mapper
+ *     3. 同名的缓存先被 @CreateCache 字段 (UserService.findUsers) 创建时仍然防击穿
+ * 远程缓存使用内存中的 Map 代替 Redis。
+ * </pre>
+ */
+public class CacheStampedeTest {
+    private static final int THREADS = 64;
+
+    private AnnotationConfigApplicationContext context;
+    private OrganizationService orgService;
+    private UserService userService;
+    private final AtomicInteger loads = new AtomicInteger(); // 查询数据库的次数
+
+    @BeforeEach
+    public void setup() {
+        // 很慢的数据库查询
+        OrganizationMapper orgMapper = Mockito.mock(OrganizationMapper.class);
+        Mockito.when(orgMapper.findOrganizationByHost(Mockito.anyString())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            Thread.sleep(200);
+            return new Organization().setOrgId(2).setHost(invocation.getArgument(0));
+        });
+        UserMapper userMapper = Mockito.mock(UserMapper.class);
+        Mockito.when(userMapper.findUserById(Mockito.anyLong())).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            Thread.sleep(200);
+            return new User(invocation.<Long>getArgument(0), "alice", null);
+        });
+
+        context = new AnnotationConfigApplicationContext();
+        context.register(CacheConfig.class);
+        context.registerBean(OrganizationMapper.class, () -> orgMapper);
+        context.registerBean(CacheInvalidationService.class, () -> Mockito.mock(CacheInvalidationService.class));
+        context.registerBean(OrganizationRoutingTable.class, () -> Mockito.mock(OrganizationRoutingTable.class));
+        context.registerBean(CachedUidGenerator.class, () -> Mockito.mock(CachedUidGenerator.class));
+        context.registerBean(UserMapper.class, () -> userMapper);
+        context.registerBean(JwtService.class, () -> Mockito.mock(JwtService.class));
+        context.registerBean(LoginRecordService.class, () -> Mockito.mock(LoginRecordService.class));
+        context.registerBean(PasswordService.class, () -> Mockito.mock(PasswordService.class));
+        context.registerBean(UserService.class);
+        context.registerBean(TempFileService.class, () -> Mockito.mock(TempFileService.class));
+        context.registerBean(RepoFileService.class, () -> Mockito.mock(RepoFileService.class));
+        context.registerBean(AppConfig.class, AppConfig::new);
+        context.registerBean(SnowflakeIdCodec.class, () -> Mockito.mock(SnowflakeIdCodec.class));
+        context.registerBean(OrganizationService.class);
+        context.refresh();
+
+        orgService  = context.getBean(OrganizationService.class);
+        userService = context.getBean(UserService.class);
+    }
+
+    @AfterEach
+    public void destroy() {
+        context.close();
+    }
+
+    @Test
+    public void singleFlightOnMissingKey() throws Exception {
+        // 所有线程同时请求缓存中没有的机构
+        List<Organization> orgs = concurrent(() -> orgService.findOrganizationByHost("a.com"));
+
+        Assertions.assertEquals(1, loads.get(), "并发加载同一个 key 时只查询一次数据库");
+        orgs.forEach(org -> Assertions.assertEquals("a.com", org.getHost()));
+
+        // 加载后命中缓存
+        Assertions.assertEquals("a.com", orgService.findOrganizationByHost("a.com").getHost());
+        Assertions.assertEquals(1, loads.get());
+
+        // 不同的 key 分别加载
+        orgService.findOrganizationByHost("b.com");
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void singleFlightAfterCreateCache() throws Exception {
+        // 先通过 @CreateCache 的字段访问缓存 (缓存由字段的配置创建)，再并发访问 @Cached 的方法
+        Assertions.assertTrue(userService.findUsers(Arrays.asList(1L, 2L)).isEmpty());
+
+        List<User> users = concurrent(() -> userService.findUser(3));
+
+        Assertions.assertEquals(1, loads.get(), "缓存由 @CreateCache 创建时也应该只查询一次数据库");
+        users.forEach(user -> Assertions.assertEquals(3, user.getUserId()));
+    }
+
+    /**
+     * THREADS 个线程同时调用 call，返回每个线程的结果
+     */
+    private static <T> List<T> concurrent(Callable<T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+
+        start.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+
+        executor.shutdown();
+        return results;
+    }
+
+    /**
+     * 和 application.yml 中的 jetcache 相同的配置，只是远程缓存使用内存中的 Map
+     */
+    @Configuration
+    // 只代理被测试的类，不代理 Mockito 生成的对象
+    @EnableMethodCache(basePackages = { "com.xtuer.service.OrganizationService", "com.xtuer.service.UserService" })
+    @EnableCreateCacheAnnotation
+    static class CacheConfig {
+        @Bean
+        public SpringConfigProvider springConfigProvider() {
+            return new SpringConfigProvider();
+        }
+
+        @Bean
+        public GlobalCacheConfig config(SpringConfigProvider configProvider) {
+            Map<String, CacheBuilder> localBuilders = Collections.singletonMap("default", CaffeineCacheBuilder.createCaffeineCacheBuilder()
+                    .keyConvertor(FastjsonKeyConvertor.INSTANCE)
+                    .expireAfterWrite(1, TimeUnit.HOURS)
+                    .limit(100));
+            Map<String, CacheBuilder> remoteBuilders = Collections.singletonMap("default", new MemoryRemoteCacheBuilder()
+                    .keyConvertor(FastjsonKeyConvertor.INSTANCE)
+                    .expireAfterWrite(1, TimeUnit.HOURS));
+
+            GlobalCacheConfig globalCacheConfig = new GlobalCacheConfig();
+            globalCacheConfig.setConfigProvider(configProvider);
+            globalCacheConfig.setLocalCacheBuilders(localBuilders);
+            globalCacheConfig.setRemoteCacheBuilders(remoteBuilders);
+            globalCacheConfig.setAreaInCacheName(false);
+
+            return globalCacheConfig;
+        }
+    }
+
+    /**
+     * 代替 Redis 的远程缓存，缓存在内存中
+     */
+    static class MemoryRemoteCacheBuilder extends ExternalCacheBuilder<MemoryRemoteCacheBuilder> {
+        MemoryRemoteCacheBuilder() {
+            buildFunc(config -> {
+                EmbeddedCacheConfig<Object, Object> embedded = new EmbeddedCacheConfig<>();
+                embedded.setLimit(100);
+                embedded.setKeyConvertor(config.getKeyConvertor());
+                embedded.setExpireAfterWriteInMillis(config.getExpireAfterWriteInMillis());
+
+                return new LinkedHashMapCache<>(embedded);
+            });
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import com.xtuer.config.AppConfig;
+import com.xtuer.service.CompressedFileService;
+import com.xtuer.util.ResponseUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 测试文本文件的压缩: 根据 Accept-Encoding 选择压缩后的文件，第一次访问时生成，小文件、大文件和非文本文件不压缩
+ */
+public class CompressedFileServiceTest {
+    @TempDir
+    Path dir;
+
+    private AppConfig config;
+    private CompressedFileService service;
+    private File js;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        config = new AppConfig();
+        config.setFileCompressEnabled(true);
+        config.setFileCompressMinSize(1024);
+        config.setFileCompressMaxSize(1024 * 1024);
+        service = new CompressedFileService(config);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("function f").append(i).append("() { return ").append(i).append("; }\n");
+        }
+        js = write("app.js", text.toString());
+    }
+
+    @Test
+    public void gzip() throws IOException {
+        ResponseUtils.Options options = new ResponseUtils.Options();
+        File selected = service.select(js, options, request("gzip, deflate"));
+
+        Assertions.assertEquals(js.getPath() + ".gz", selected.getPath());
+        Assertions.assertEquals("gzip", options.getContentEncoding());
+        Assertions.assertTrue(options.isVaryAcceptEncoding());
+
+        try (InputStream input = new GZIPInputStream(new FileInputStream(selected))) {
+            Assertions.assertArrayEquals(Files.readAllBytes(js.toPath()), IOUtils.toByteArray(input));
+        }
+
+        // 再次访问时使用已经生成的文件
+        service.select(js, new ResponseUtils.Options(), request("gzip"));
+        Assertions.assertEquals(1, service.getCompressedCount());
+        Assertions.assertEquals(2, service.getServedCount());
+        Assertions.assertEquals(2 * (js.length() - selected.length()), service.getSavedBytes());
+        System.out.printf("app.js: %d bytes, gzip: %d bytes, saved: %d bytes%n", js.length(), selected.length(), service.getSavedBytes());
+    }
+
+    @Test
+    public void notCompressed() throws IOException {
+        // 不接受 gzip
+        ResponseUtils.Options options = new ResponseUtils.Options();
+        Assertions.assertEquals(js, service.select(js, options, request(null)));
+        Assertions.assertEquals(js, service.select(js, options, request("gzip;q=0, identity")));
+        Assertions.assertNull(options.getContentEncoding());
+        Assertions.assertTrue(options.isVaryAcceptEncoding());
+
+        // 小文件
+        File small = write("small.css", "body { margin: 0; }");
+        Assertions.assertEquals(small, service.select(small, new ResponseUtils.Options(), request("gzip")));
+
+        // 非文本文件
+        File png = write("logo.png", js.toString());
+        options = new ResponseUtils.Options();
+        Assertions.assertEquals(png, service.select(png, options, request("gzip")));
+        Assertions.assertFalse(options.isVaryAcceptEncoding());
+
+        Assertions.assertEquals(0, service.getCompressedCount());
+    }
+
+    @Test
+    public void tooLarge() throws IOException {
+        // 大于 maxSize 的文件不在请求中压缩，预先压缩好的 .gz 仍然使用
+        config.setFileCompressMaxSize(js.length() - 1);
+        ResponseUtils.Options options = new ResponseUtils.Options();
+        Assertions.assertEquals(js, service.select(js, options, request("gzip")));
+        Assertions.assertNull(options.getContentEncoding());
+        Assertions.assertFalse(new File(js.getPath() + ".gz").exists());
+
+        File gz = write("app.js.gz", "gzip");
+        Assertions.assertEquals(gz, service.select(js, new ResponseUtils.Options(), request("gzip")));
+        Assertions.assertEquals(0, service.getCompressedCount());
+    }
+
+    @Test
+    public void concurrentCompress() throws Exception {
+        // 同一个文件同时被多个请求访问时只压缩一次
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<File>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < threads * 4; i++) {
+            tasks.add(() -> service.select(js, new ResponseUtils.Options(), request("gzip")));
+        }
+
+        try {
+            for (Future<File> future : executor.invokeAll(tasks)) {
+                Assertions.assertEquals(js.getPath() + ".gz", future.get().getPath());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals(1, service.getCompressedCount());
+    }
+
+    @Test
+    public void failureLeavesNoTempFile() throws IOException {
+        // {文件名}.gz 是一个非空的目录，重命名失败时发送原文件，并删除临时文件
+        Path gz = Files.createDirectories(dir.resolve("app.js.gz"));
+        Files.write(gz.resolve("keep"), new byte[1]);
+
+        ResponseUtils.Options options = new ResponseUtils.Options();
+        Assertions.assertEquals(js, service.select(js, options, request("gzip")));
+        Assertions.assertNull(options.getContentEncoding());
+
+        try (Stream<Path> files = Files.list(dir)) {
+            Assertions.assertTrue(files.noneMatch(path -> path.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void preCompressedBrotli() throws IOException {
+        File br = write("app.js.br", "brotli");
+
+        ResponseUtils.Options options = new ResponseUtils.Options();
+        Assertions.assertEquals(br, service.select(js, options, request("gzip, br")));
+        Assertions.assertEquals("br", options.getContentEncoding());
+
+        // 原文件修改后 br 文件过期，使用 gzip
+        Assertions.assertTrue(js.setLastModified(br.lastModified() + 2000));
+        options = new ResponseUtils.Options();
+        service.select(js, options, request("gzip, br"));
+        Assertions.assertEquals("gzip", options.getContentEncoding());
+    }
+
+    @Test
+    public void responseHeaders() throws IOException {
+        ResponseUtils.Options options = new ResponseUtils.Options().setFilename(js.getName());
+        MockHttpServletRequest request = request("gzip");
+        request.addHeader("Range", "bytes=0-9"); // 压缩后的文件忽略 Range
+        File selected = service.select(js, options, request);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseUtils.readFileToResponse(selected.getAbsolutePath(), options, request, response);
+
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals("gzip", response.getHeader("Content-Encoding"));
+        Assertions.assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        Assertions.assertTrue(response.getContentType().contains("javascript"));
+        Assertions.assertEquals(selected.length(), response.getContentAsByteArray().length);
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = dir.resolve(name).toFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static MockHttpServletRequest request(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        if (acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+
+        return request;
+    }
+}
@@ -0,0 +1,107 @@
+import com.xtuer.config.AppConfig;
+import com.xtuer.controller.FileController;
+import com.xtuer.service.RepoFileService;
+import com.xtuer.util.ResponseUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 测试仓库文件交给前端的代理服务器发送: 只返回 X-Accel-Redirect 或者 X-Sendfile 等响应头，不写文件内容
+ */
+public class FileOffloadTest {
+    @TempDir
+    Path dir;
+
+    private AppConfig config;
+    private FileController controller;
+    private File file;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        config = new AppConfig();
+        config.setRepoDirectory(dir.toString());
+        config.setRepoFileMaxAge(31536000);
+        config.setFileOffloadPrefix("/internal/repo/");
+
+        RepoFileService repoFileService = new RepoFileService();
+        ReflectionTestUtils.setField(repoFileService, "config", config);
+
+        controller = new FileController();
+        ReflectionTestUtils.setField(controller, "config", config);
+        ReflectionTestUtils.setField(controller, "repoFileService", repoFileService);
+
+        file = dir.resolve("2018-06-19/293591971581788160.pdf").toFile();
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), "%PDF-1.4".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void nginx() throws IOException {
+        config.setFileOffload(ResponseUtils.Offload.NGINX);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.accessRepoFile(request("/file/repo/2018-06-19/293591971581788160.pdf"), response);
+
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals("/internal/repo/2018-06-19/293591971581788160.pdf", response.getHeader("X-Accel-Redirect"));
+        Assertions.assertEquals("application/pdf", response.getHeader("Content-Type"));
+        Assertions.assertEquals("inline;filename=\"293591971581788160.pdf\"", response.getHeader("Content-Disposition"));
+        Assertions.assertEquals("public, max-age=31536000, immutable", response.getHeader("Cache-Control"));
+        Assertions.assertNull(response.getHeader("Content-Length"));
+        Assertions.assertEquals(0, response.getContentAsByteArray().length); // 由 nginx 发送文件
+    }
+
+    @Test
+    public void apache() throws IOException {
+        config.setFileOffload(ResponseUtils.Offload.APACHE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.accessRepoFile(request("/file/repo/2018-06-19/293591971581788160.pdf"), response);
+
+        Assertions.assertEquals(file.getAbsolutePath(), response.getHeader("X-Sendfile"));
+        Assertions.assertNull(response.getHeader("X-Accel-Redirect"));
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void originalFilename() throws IOException {
+        MockHttpServletRequest request = request("/file/download/2018-06-19/293591971581788160.pdf");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ResponseUtils.Options options = new ResponseUtils.Options().setFilename("报告.pdf");
+
+        ResponseUtils.offloadFileToResponse(file.getAbsolutePath(), "/internal/repo/2018-06-19/293591971581788160.pdf",
+                ResponseUtils.Offload.NGINX, options, request, response);
+
+        String filename = new String("报告.pdf".getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+        Assertions.assertEquals("inline;filename=\"" + filename + "\"", response.getHeader("Content-Disposition"));
+        Assertions.assertNull(response.getHeader("Cache-Control"));
+    }
+
+    @Test
+    public void notFound() throws IOException {
+        config.setFileOffload(ResponseUtils.Offload.NGINX);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.accessRepoFile(request("/file/repo/2018-06-19/1.pdf"), response);
+
+        Assertions.assertEquals(404, response.getStatus());
+        Assertions.assertNull(response.getHeader("X-Accel-Redirect"));
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.addHeader("Accept", "application/pdf,*/*");
+        return request;
+    }
+}
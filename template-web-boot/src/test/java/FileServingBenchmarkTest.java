@@ -0,0 +1,146 @@
+import com.xtuer.util.ResponseUtils;
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ * 使用内嵌的 Tomcat 比较并发下载大文件时 ResponseUtils.readFileToResponse 的吞吐量:
+ *     copy    : 关闭 Tomcat 的 sendfile，ResponseUtils 读取文件到堆中的缓冲区再写到输出流
+ *     sendfile: 开启 Tomcat 的 sendfile，ResponseUtils 只设置 sendfile 属性，由 Tomcat 直接从文件发送到 socket
+ * 耗时较长，不在默认的 test 任务中运行，使用 gradle benchmark 运行。
+ * </pre>
+ */
+@Tag("benchmark")
+public class FileServingBenchmarkTest {
+    private static final int FILE_SIZE = 64 * 1024 * 1024; // 64MB
+    private static final int CLIENTS   = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void throughput() throws Exception {
+        Path file = dir.resolve("video.mp4");
+        Files.write(file, new byte[FILE_SIZE]);
+
+        System.out.printf("%-10s %-12s%n", "Mode", "MB/s");
+
+        // 先预热，再计时
+        for (int round = 0; round < 2; round++) {
+            double copy     = serve(file, false);
+            double sendfile = serve(file, true);
+
+            if (round == 1) {
+                System.out.printf("%-10s %-12.1f%n", "copy", copy);
+                System.out.printf("%-10s %-12.1f%n", "sendfile", sendfile);
+            }
+        }
+    }
+
+    /**
+     * CLIENTS 个客户端同时下载文件，返回总的吞吐量，单位 MB/s
+     */
+    private double serve(Path file, boolean sendfile) throws Exception {
+        AtomicInteger sendfileCount = new AtomicInteger(); // 交给 Tomcat sendfile 发送的请求数
+        Tomcat tomcat = start(file, sendfile, sendfileCount);
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+
+        try {
+            List<Future<Long>> downloads = new ArrayList<>();
+            long start = System.nanoTime();
+
+            for (int i = 0; i < CLIENTS; i++) {
+                downloads.add(executor.submit(() -> download(tomcat)));
+            }
+            for (Future<Long> download : downloads) {
+                // 响应头 + 文件
+                long received = download.get(2, TimeUnit.MINUTES);
+                Assertions.assertTrue(received > FILE_SIZE && received < FILE_SIZE + 2048);
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Assertions.assertEquals(sendfile ? CLIENTS : 0, sendfileCount.get());
+
+            return (double) FILE_SIZE * CLIENTS / 1024 / 1024 / seconds;
+        } finally {
+            executor.shutdownNow();
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    private Tomcat start(Path file, boolean sendfile, AtomicInteger sendfileCount) throws Exception {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(dir.resolve("tomcat").toString());
+
+        Connector connector = new Connector();
+        connector.setPort(0);
+        connector.setProperty("maxThreads", String.valueOf(CLIENTS * 2));
+        connector.setProperty("useSendfile", String.valueOf(sendfile));
+        tomcat.setConnector(connector);
+
+        Context context = tomcat.addContext("", dir.toString());
+        Tomcat.addServlet(context, "file", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                ResponseUtils.readFileToResponse(file.toString(), "video.mp4", request, response);
+
+                if (request.getAttribute("org.apache.tomcat.sendfile.filename") != null) {
+                    sendfileCount.incrementAndGet();
+                }
+            }
+        });
+        context.addServletMappingDecoded("/file", "file");
+        tomcat.start();
+
+        return tomcat;
+    }
+
+    /**
+     * 下载文件，返回接收到的字节数 (包含响应头)
+     */
+    private static long download(Tomcat tomcat) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", tomcat.getConnector().getLocalPort()));
+
+            OutputStream output = socket.getOutputStream();
+            output.write("GET /file HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+
+            long received = 0;
+            byte[] buffer = new byte[65536];
+            int read;
+            InputStream input = socket.getInputStream();
+
+            while ((read = input.read(buffer)) > 0) {
+                received += read;
+            }
+
+            return received;
+        }
+    }
+}
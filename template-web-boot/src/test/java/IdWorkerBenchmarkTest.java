@@ -0,0 +1,117 @@
+import com.xtuer.service.AtomicIdWorker;
+import com.xtuer.service.IdWorker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较 synchronized 的 IdWorker 和无锁的 AtomicIdWorker 在 1 到 N 个线程下生成 ID 的吞吐量 (benchmark)，
+ * 以及 AtomicIdWorker 生成的 ID 的正确性 (默认的 test 任务中运行)
+ */
+public class IdWorkerBenchmarkTest {
+    private static final int ID_COUNT_PER_THREAD = 200_000; // 每个线程生成的 ID 数量
+
+    @Test
+    public void uniqueIds() throws InterruptedException {
+        // 多个线程同时生成 ID，不能有重复
+        IdWorker idWorker = new AtomicIdWorker(1, 2);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threadCount = 8;
+        int idCount = 20_000;
+
+        run(threadCount, () -> {
+            for (int i = 0; i < idCount; i++) {
+                ids.add(idWorker.nextId());
+            }
+        });
+
+        Assertions.assertEquals(threadCount * idCount, ids.size());
+    }
+
+    @Test
+    public void batchIds() {
+        // 批量获取的 ID 跨越多个毫秒时也要递增且不重复
+        IdWorker idWorker = new AtomicIdWorker(1, 2);
+        idWorker.nextId();
+        long[] ids = idWorker.nextIds(10_000);
+
+        Assertions.assertEquals(10_000, ids.length);
+        for (int i = 1; i < ids.length; i++) {
+            Assertions.assertTrue(ids[i] > ids[i - 1]);
+        }
+        Assertions.assertTrue(idWorker.nextId() > ids[ids.length - 1]);
+        Assertions.assertEquals(0, idWorker.nextIds(0).length);
+    }
+
+    @Test
+    public void sameLayout() {
+        // 相同的数据中心 ID 和机器 ID，生成的 ID 除去时间截和序列后应该相同
+        long mask = ((1L << 10) - 1) << 12;
+        long id1  = new IdWorker(3, 7).nextId();
+        long id2  = new AtomicIdWorker(3, 7).nextId();
+
+        Assertions.assertEquals(id1 & mask, id2 & mask);
+        Assertions.assertEquals((3L << 17) | (7L << 12), id2 & mask);
+    }
+
+    @Test
+    @Tag("benchmark") // 多线程计时，使用 gradle benchmark 运行
+    public void throughput() throws InterruptedException {
+        int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        System.out.printf("%-8s %-20s %-20s%n", "Threads", "IdWorker (ids/ms)", "AtomicIdWorker (ids/ms)");
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double syncRate   = measure(new IdWorker(0, 0), threads);
+            double atomicRate = measure(new AtomicIdWorker(0, 0), threads);
+
+            System.out.printf("%-8d %-20.1f %-20.1f%n", threads, syncRate, atomicRate);
+        }
+    }
+
+    /**
+     * 使用 threadCount 个线程同时生成 ID，返回每毫秒生成的 ID 数量
+     */
+    private static double measure(IdWorker idWorker, int threadCount) throws InterruptedException {
+        long start = System.nanoTime();
+
+        run(threadCount, () -> {
+            for (int i = 0; i < ID_COUNT_PER_THREAD; i++) {
+                idWorker.nextId();
+            }
+        });
+
+        double elapsedMillis = (System.nanoTime() - start) / 1_000_000.0;
+        return threadCount * ID_COUNT_PER_THREAD / elapsedMillis;
+    }
+
+    /**
+     * 使用 threadCount 个线程同时执行 task，所有线程执行完后返回
+     */
+    private static void run(int threadCount, Runnable task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+
+        for (int i = 0; i < threadCount; i++) {
+            executor.execute(() -> {
+                try {
+                    startLatch.await();
+                    task.run();
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        startLatch.countDown();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.MINUTES);
+    }
+}
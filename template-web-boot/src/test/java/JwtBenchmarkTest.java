@@ -0,0 +1,47 @@
+import com.xtuer.util.Jwt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Supplier;
+
+/**
+ * 比较 MD5 和 HS256 生成 token (sign) 和校验 token (verify) 的耗时，token 的正确性见 JwtTest，使用 gradle benchmark 运行
+ */
+@Tag("benchmark")
+public class JwtBenchmarkTest {
+    private static final int ITERATIONS = 200_000;
+
+    @Test
+    public void signAndVerify() {
+        System.out.printf("%-8s %-16s %-16s%n", "Mode", "Sign (ns/op)", "Verify (ns/op)");
+
+        for (Jwt.Algorithm algorithm : Jwt.Algorithm.values()) {
+            String token = JwtTest.token(algorithm);
+
+            // 先预热，再计时
+            measure(() -> JwtTest.token(algorithm));
+            measure(() -> Jwt.checkToken(token, JwtTest.APP_KEY));
+
+            double sign   = measure(() -> JwtTest.token(algorithm));
+            double verify = measure(() -> Jwt.checkToken(token, JwtTest.APP_KEY));
+
+            System.out.printf("%-8s %-16.1f %-16.1f%n", algorithm, sign, verify);
+        }
+    }
+
+    /**
+     * 执行 task ITERATIONS 次，返回每次的平均耗时，单位纳秒
+     */
+    private static double measure(Supplier<?> task) {
+        Object sink = null;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink = task.get();
+        }
+
+        Assertions.assertNotNull(sink);
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+}
@@ -0,0 +1,117 @@
+import com.xtuer.bean.Role;
+import com.xtuer.bean.User;
+import com.xtuer.config.AppConfig;
+import com.xtuer.security.JwtService;
+import com.xtuer.security.LocalTokenRevocationStore;
+import com.xtuer.security.TokenRevocationService;
+import com.xtuer.util.Jwt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 测试 JwtService 中校验通过的 token 的缓存
+ */
+public class JwtServiceTest {
+    private JwtService jwtService;
+    private AppConfig config;
+
+    @BeforeEach
+    public void setup() {
+        config = new AppConfig();
+        config.setAppId("test");
+        config.setAppKey("Passw0rd");
+        config.setAuthTokenDuration(60);
+        config.setAuthTokenAlgorithm(Jwt.Algorithm.HS256);
+        config.setAuthTokenAcceptMd5(true);
+        config.setAuthTokenCacheSize(100);
+        config.setTokenRevocationRefreshInterval(60_000);
+
+        jwtService = new JwtService();
+        jwtService.setConfig(config);
+        jwtService.setRevocationService(new TokenRevocationService(new LocalTokenRevocationStore(), config));
+    }
+
+    @Test
+    public void cacheHit() {
+        String token = jwtService.generateToken(newUser(1));
+
+        JwtService.VerifiedToken first  = jwtService.verifyToken(token);
+        JwtService.VerifiedToken second = jwtService.verifyToken(token);
+
+        Assertions.assertNotNull(first);
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, jwtService.getCacheMisses());
+        Assertions.assertEquals(1, jwtService.getCacheHits());
+        Assertions.assertEquals(1, first.getUser().getUserId());
+        Assertions.assertTrue(first.getUser().hasRole(Role.ROLE_USER));
+        Assertions.assertEquals(1, first.getAuthorities().size());
+
+        // 修改一个请求中的用户不影响缓存的 token
+        User user = first.getUser();
+        user.setNickname("changed").addRole(Role.ROLE_ADMIN_SYSTEM);
+        Assertions.assertNotSame(user, second.getUser());
+        Assertions.assertNotEquals("changed", second.getUser().getNickname());
+        Assertions.assertFalse(second.getUser().hasRole(Role.ROLE_ADMIN_SYSTEM));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.getRoles().add(Role.ROLE_ADMIN_SYSTEM));
+    }
+
+    @Test
+    public void invalidTokenNotCached() {
+        Assertions.assertNull(jwtService.extractUser("xxx.yyy"));
+        Assertions.assertNull(jwtService.extractUser("xxx.yyy"));
+        Assertions.assertEquals(0, jwtService.getCacheSize());
+        Assertions.assertEquals(2, jwtService.getCacheMisses());
+    }
+
+    @Test
+    public void expiredTokenRemoved() throws InterruptedException {
+        config.setAuthTokenDuration(1);
+        String token = jwtService.generateToken(newUser(1));
+        Assertions.assertNotNull(jwtService.extractUser(token));
+
+        Thread.sleep(1100);
+        Assertions.assertNull(jwtService.extractUser(token));
+        Assertions.assertEquals(0, jwtService.getCacheSize());
+    }
+
+    @Test
+    public void sizeCap() {
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertNotNull(jwtService.extractUser(jwtService.generateToken(newUser(i))));
+            Assertions.assertTrue(jwtService.getCacheSize() <= config.getAuthTokenCacheSize());
+        }
+    }
+
+    @Test
+    public void revokeToken() {
+        // 撤销的 token 无效，同一个用户的其他 token 仍然有效
+        String token1 = jwtService.generateToken(newUser(1));
+        String token2 = jwtService.generateToken(newUser(1).setNickname("Alice"));
+        Assertions.assertNotNull(jwtService.extractUser(token1));
+
+        jwtService.revokeToken(token1);
+        Assertions.assertNull(jwtService.extractUser(token1));
+        Assertions.assertNotNull(jwtService.extractUser(token2));
+    }
+
+    @Test
+    public void revokeUserTokens() throws InterruptedException {
+        // 撤销用户之前签发的所有 token，之后签发的 token 有效，其他用户不受影响
+        String token1 = jwtService.generateToken(newUser(1));
+        String token2 = jwtService.generateToken(newUser(2));
+        Assertions.assertNotNull(jwtService.extractUser(token1)); // 放入缓存
+
+        Thread.sleep(2);
+        jwtService.revokeUserTokens(1);
+        Thread.sleep(2);
+
+        Assertions.assertNull(jwtService.extractUser(token1));
+        Assertions.assertNotNull(jwtService.extractUser(token2));
+        Assertions.assertNotNull(jwtService.extractUser(jwtService.generateToken(newUser(1))));
+    }
+
+    private static User newUser(long userId) {
+        return new User(userId, "user-" + userId, "Passw0rd", Role.ROLE_USER).setNickname("Bob");
+    }
+}
@@ -0,0 +1,76 @@
+import com.xtuer.bean.Role;
+import com.xtuer.util.Jwt;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+/**
+ * 测试 MD5 和 HS256 签名的 token: 签名、校验、有效期和解析 claims
+ */
+public class JwtTest {
+    static final String APP_ID  = "school-1";
+    static final String APP_KEY = "Passw0rd";
+
+    @Test
+    public void hs256() {
+        String token = token(Jwt.Algorithm.HS256);
+
+        Assertions.assertTrue(Jwt.checkToken(token, APP_KEY));
+        Assertions.assertTrue(Jwt.checkToken(token, APP_KEY, false));
+        Assertions.assertFalse(Jwt.checkToken(token, "wrong-key"));
+        Assertions.assertEquals("放下", Jwt.params(token).get("username"));
+
+        // 修改 payload 后签名无效
+        String tampered = Jwt.create(APP_ID, APP_KEY).algorithm(Jwt.Algorithm.HS256).param("username", "admin").token();
+        tampered = tampered.substring(0, tampered.indexOf('.')) + token.substring(token.indexOf('.'));
+        Assertions.assertFalse(Jwt.checkToken(tampered, APP_KEY));
+    }
+
+    @Test
+    public void md5StillVerifies() {
+        // 迁移期间 MD5 签名的旧 token 仍然有效，迁移完成后无效
+        String token = token(Jwt.Algorithm.MD5);
+
+        Assertions.assertTrue(Jwt.checkToken(token, APP_KEY));
+        Assertions.assertFalse(Jwt.checkToken(token, APP_KEY, false));
+        Assertions.assertEquals("放下", Jwt.params(token).get("username"));
+    }
+
+    @Test
+    public void verifyClaims() {
+        // verify() 同时校验签名和有效期，并解析出 userId 和 roles
+        for (Jwt.Algorithm algorithm : Jwt.Algorithm.values()) {
+            Jwt.Claims claims = Jwt.verify(token(algorithm), APP_KEY);
+
+            Assertions.assertNotNull(claims);
+            Assertions.assertEquals(1234567890123456789L, claims.getUserId());
+            Assertions.assertEquals(EnumSet.of(Role.ROLE_ADMIN_SYSTEM), claims.getRoles());
+            Assertions.assertEquals("放下", claims.get("username"));
+            Assertions.assertNull(Jwt.verify(token(algorithm), "wrong-key"));
+        }
+
+        // 角色无效的 token 无效
+        String token = Jwt.create(APP_ID, APP_KEY).algorithm(Jwt.Algorithm.HS256).param("roles", "[\"ROLE_NOBODY\"]").token();
+        Assertions.assertNull(Jwt.verify(token, APP_KEY));
+    }
+
+    @Test
+    public void expired() {
+        String token = Jwt.create(APP_ID, APP_KEY).algorithm(Jwt.Algorithm.HS256).expiredAt(System.currentTimeMillis() - 1).token();
+        Assertions.assertFalse(Jwt.checkToken(token, APP_KEY));
+        Assertions.assertFalse(Jwt.checkToken("xxx.yyy", APP_KEY));
+    }
+
+    /**
+     * 生成和 JwtService 中相同格式的 token
+     */
+    static String token(Jwt.Algorithm algorithm) {
+        return Jwt.create(APP_ID, APP_KEY).algorithm(algorithm).expiredAt(System.currentTimeMillis() + 60_000)
+                .param("userId",   "1234567890123456789")
+                .param("username", "放下")
+                .param("nickname", "Bob")
+                .param("roles",    "[\"ROLE_ADMIN_SYSTEM\"]")
+                .token();
+    }
+}
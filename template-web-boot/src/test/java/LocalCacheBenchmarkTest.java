@@ -0,0 +1,148 @@
+import com.alicp.jetcache.Cache;
+import com.alicp.jetcache.embedded.CaffeineCacheBuilder;
+import com.alicp.jetcache.embedded.LinkedHashMapCacheBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 使用 Zipf 分布的 key 访问序列 (少量热点 key 占大部分访问，夹杂只访问一次的 key)，
+ * 比较 LinkedHashMap (LRU + 全局锁) 和 Caffeine (W-TinyLFU + 无锁读) 本地缓存的命中率和多线程吞吐量 (benchmark)
+ */
+public class LocalCacheBenchmarkTest {
+    private static final int LIMIT      = 10_000;    // 缓存的最大数量，和 application.yml 中的 jetcache.local.default.limit 相同
+    private static final int KEY_SPACE  = 100_000;   // 热点 key 的范围
+    private static final int TRACE_SIZE = 1_000_000; // 访问序列的长度
+    private static final int THREADS    = 8;
+
+    @Test
+    public void hitRate() {
+        String[] trace = zipfTrace(TRACE_SIZE, KEY_SPACE, 0.9, 42);
+        System.out.printf("%-16s %-10s%n", "Cache", "Hit rate");
+
+        double lru = hitRate(() -> LinkedHashMapCacheBuilder.createLinkedHashMapCacheBuilder().limit(LIMIT).buildCache(), trace);
+        double tinyLfu = hitRate(() -> CaffeineCacheBuilder.createCaffeineCacheBuilder().limit(LIMIT).buildCache(), trace);
+
+        System.out.printf("%-16s %-10.2f%n", "LinkedHashMap", lru * 100);
+        System.out.printf("%-16s %-10.2f%n", "Caffeine", tinyLfu * 100);
+
+        // 只访问一次的 key 会挤掉 LRU 中的热点 key，W-TinyLFU 按访问频率准入
+        Assertions.assertTrue(tinyLfu > lru, "Caffeine 的命中率应该比 LinkedHashMap 高");
+    }
+
+    @Test
+    @Tag("benchmark") // 多线程计时，使用 gradle benchmark 运行
+    public void throughput() throws InterruptedException {
+        String[] trace = zipfTrace(TRACE_SIZE, KEY_SPACE, 0.9, 7);
+        System.out.printf("%-16s %-16s%n", "Cache", "Throughput (ops/ms)");
+
+        // 先预热，再计时
+        for (int round = 0; round < 2; round++) {
+            double lru = throughput(LinkedHashMapCacheBuilder.createLinkedHashMapCacheBuilder().limit(LIMIT).buildCache(), trace);
+            double tinyLfu = throughput(CaffeineCacheBuilder.createCaffeineCacheBuilder().limit(LIMIT).buildCache(), trace);
+
+            if (round == 1) {
+                System.out.printf("%-16s %-16.1f%n", "LinkedHashMap", lru);
+                System.out.printf("%-16s %-16.1f%n", "Caffeine", tinyLfu);
+            }
+        }
+    }
+
+    /**
+     * 单线程回放访问序列，未命中时放入缓存，返回命中率
+     */
+    private static double hitRate(Supplier<Cache<Object, Object>> factory, String[] trace) {
+        Cache<Object, Object> cache = factory.get();
+        long hits = 0;
+
+        for (String key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+
+        return hits / (double) trace.length;
+    }
+
+    /**
+     * THREADS 个线程从不同的位置同时回放访问序列，返回每毫秒的操作数
+     */
+    private static double throughput(Cache<Object, Object> cache, String[] trace) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder ops = new LongAdder();
+
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t * (trace.length / THREADS);
+
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+
+                for (int i = 0; i < trace.length; i++) {
+                    String key = trace[(offset + i) % trace.length];
+
+                    if (cache.get(key) == null) {
+                        cache.put(key, key);
+                    }
+                }
+
+                ops.add(trace.length);
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        return ops.sum() / ((System.nanoTime() - begin) / 1_000_000.0);
+    }
+
+    /**
+     * 生成 Zipf 分布的访问序列，排名为 k 的 key 的访问概率和 1/k^s 成正比，每 20 次访问夹杂 1 个只访问一次的 key (模拟扫描)
+     *
+     * @param size     序列的长度
+     * @param keySpace 热点 key 的范围
+     * @param s        Zipf 分布的参数，越大越集中
+     * @param seed     随机数种子，同一个种子生成的序列相同
+     * @return 返回访问序列
+     */
+    private static String[] zipfTrace(int size, int keySpace, double s, long seed) {
+        // 预先计算累积分布，使用二分查找采样
+        double[] cdf = new double[keySpace];
+        double sum = 0;
+        for (int k = 1; k <= keySpace; k++) {
+            sum += 1 / Math.pow(k, s);
+            cdf[k - 1] = sum;
+        }
+
+        Random random = new Random(seed);
+        String[] trace = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            if (i % 20 == 19) {
+                trace[i] = "scan." + i;
+                continue;
+            }
+
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            trace[i] = "key." + (index >= 0 ? index : -index - 1);
+        }
+
+        return trace;
+    }
+}
@@ -0,0 +1,119 @@
+import com.xtuer.bean.UserLoginRecord;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.UserMapper;
+import com.xtuer.service.LoginRecordService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试登录记录延迟批量写入数据库，使用 Mockito 模拟 UserMapper，记录每次写入的数量
+ */
+public class LoginRecordServiceTest {
+    private UserMapper userMapper;
+    private AppConfig config;
+    private List<Integer> batches; // 每次写入数据库的记录数
+
+    @BeforeEach
+    public void setup() {
+        batches = new CopyOnWriteArrayList<>();
+        userMapper = Mockito.mock(UserMapper.class);
+        Mockito.doAnswer(invocation -> {
+            List<UserLoginRecord> records = invocation.getArgument(0);
+            batches.add(records.size());
+            return null;
+        }).when(userMapper).insertUserLoginRecords(Mockito.anyList());
+
+        config = new AppConfig();
+        config.setLoginRecordQueueSize(1000);
+        config.setLoginRecordBatchSize(100);
+        config.setLoginRecordFlushInterval(100);
+        config.setLoginRecordOfferTimeout(0);
+    }
+
+    @Test
+    public void batchBySize() throws InterruptedException {
+        // 一次放入 250 条，按每批最多 100 条写入
+        LoginRecordService service = new LoginRecordService(userMapper, config);
+        service.start();
+
+        for (int i = 0; i < 250; i++) {
+            service.addLoginRecord(i, "user-" + i);
+        }
+
+        service.stop();
+
+        Assertions.assertEquals(250, service.getFlushedCount());
+        Assertions.assertEquals(250, batches.stream().mapToInt(Integer::intValue).sum());
+        Assertions.assertTrue(batches.stream().allMatch(size -> size <= 100));
+        Assertions.assertTrue(batches.size() >= 3);
+    }
+
+    @Test
+    public void flushByInterval() throws InterruptedException {
+        // 记录数不够一批时，间隔时间到了也会写入
+        LoginRecordService service = new LoginRecordService(userMapper, config);
+        service.start();
+        service.addLoginRecord(1, "alice");
+        service.addLoginRecord(2, "bob");
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (service.getFlushedCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assertions.assertEquals(2, service.getFlushedCount());
+        Assertions.assertEquals(0, service.getQueueSize());
+        service.stop();
+    }
+
+    @Test
+    public void dropWhenFull() throws InterruptedException {
+        // 数据库写入阻塞时队列满了，新的记录被丢弃
+        CountDownLatch blocked = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            blocked.await(5, TimeUnit.SECONDS);
+            List<UserLoginRecord> records = invocation.getArgument(0);
+            batches.add(records.size());
+            return null;
+        }).when(userMapper).insertUserLoginRecords(Mockito.anyList());
+
+        config.setLoginRecordQueueSize(10);
+        LoginRecordService service = new LoginRecordService(userMapper, config);
+        service.start();
+
+        int accepted = 0;
+        for (int i = 0; i < 200; i++) {
+            accepted += service.addLoginRecord(i, "user-" + i) ? 1 : 0;
+        }
+
+        Assertions.assertTrue(service.getDroppedCount() > 0);
+        Assertions.assertEquals(200, accepted + service.getDroppedCount());
+
+        // 数据库恢复后，关闭时把队列中剩余的记录写完
+        blocked.countDown();
+        service.stop();
+        Assertions.assertEquals(accepted, service.getFlushedCount());
+        Assertions.assertFalse(service.addLoginRecord(1, "after-stop"));
+    }
+
+    @Test
+    public void failedFlush() throws InterruptedException {
+        Mockito.doThrow(new RuntimeException("DB down")).when(userMapper).insertUserLoginRecords(Mockito.anyList());
+
+        LoginRecordService service = new LoginRecordService(userMapper, config);
+        service.start();
+        service.addLoginRecord(1, "alice");
+        service.stop();
+
+        Assertions.assertEquals(1, service.getFailedCount());
+        Assertions.assertEquals(0, service.getFlushedCount());
+        Assertions.assertTrue(service.getMaxFlushMillis() >= 0);
+    }
+}
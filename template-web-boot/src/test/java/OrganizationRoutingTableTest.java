@@ -0,0 +1,85 @@
+import com.xtuer.bean.Organization;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.OrganizationMapper;
+import com.xtuer.service.LocalCacheInvalidationBus;
+import com.xtuer.service.OrganizationRoutingTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 测试域名到机构的路由表: 启动时加载，版本变化或者收到机构的失效消息时重新加载
+ */
+public class OrganizationRoutingTableTest {
+    private OrganizationMapper orgMapper;
+    private LocalCacheInvalidationBus bus;
+    private OrganizationRoutingTable table;
+
+    @BeforeEach
+    public void setup() {
+        orgMapper = Mockito.mock(OrganizationMapper.class);
+        bus = new LocalCacheInvalidationBus();
+
+        AppConfig config = new AppConfig();
+        config.setOrgRoutingPollInterval(50);
+
+        Mockito.when(orgMapper.findOrganizationsVersion()).thenReturn("2/2020-01-01 00:00:00");
+        Mockito.when(orgMapper.findAllOrganizations()).thenReturn(Arrays.asList(
+                new Organization().setOrgId(1).setHost("a.com"),
+                new Organization().setOrgId(2).setHost("b.com"),
+                new Organization().setOrgId(3))); // 没有域名的机构不加入路由表
+
+        table = new OrganizationRoutingTable(orgMapper, bus, config);
+        table.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        table.stop();
+    }
+
+    @Test
+    public void lookup() {
+        Assertions.assertTrue(table.isReady());
+        Assertions.assertEquals(2, table.size());
+        Assertions.assertEquals(1, table.findOrganization("a.com").getOrgId());
+        Assertions.assertNull(table.findOrganization("unknown.com"));
+        Assertions.assertNull(table.findOrganization(null));
+        Assertions.assertEquals(2, table.getUnknownCount());
+    }
+
+    @Test
+    public void reloadWhenVersionChanged() throws InterruptedException {
+        // 版本不变时不重新加载
+        Thread.sleep(200);
+        Assertions.assertEquals(1, table.getReloadCount());
+
+        // 删除机构后版本变化
+        Mockito.when(orgMapper.findAllOrganizations()).thenReturn(Collections.singletonList(new Organization().setOrgId(1).setHost("a.com")));
+        Mockito.when(orgMapper.findOrganizationsVersion()).thenReturn("1/2020-01-01 00:00:00");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (table.findOrganization("b.com") != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assertions.assertNull(table.findOrganization("b.com"));
+        Assertions.assertEquals(2, table.getReloadCount());
+    }
+
+    @Test
+    public void reloadOnInvalidationMessage() {
+        Mockito.when(orgMapper.findAllOrganizations()).thenReturn(Collections.singletonList(new Organization().setOrgId(4).setHost("c.com")));
+
+        bus.publish("node user.1"); // 不是机构的消息
+        Assertions.assertNull(table.findOrganization("c.com"));
+
+        bus.publish("node org.c.com");
+        Assertions.assertEquals(4, table.findOrganization("c.com").getOrgId());
+    }
+}
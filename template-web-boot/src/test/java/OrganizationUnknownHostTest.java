@@ -0,0 +1,83 @@
+import com.alicp.jetcache.Cache;
+import com.xtuer.bean.Organization;
+import com.xtuer.mapper.OrganizationMapper;
+import com.xtuer.service.OrganizationRoutingTable;
+import com.xtuer.service.OrganizationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 测试未知域名: 路由表中找不到时直接拒绝，路由表未加载时使用负缓存，同一个未知域名只查询一次数据库
+ */
+public class OrganizationUnknownHostTest {
+    private OrganizationMapper orgMapper;
+    private OrganizationRoutingTable routingTable;
+    private OrganizationService orgService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        orgMapper    = Mockito.mock(OrganizationMapper.class);
+        routingTable = Mockito.mock(OrganizationRoutingTable.class);
+        orgService   = new OrganizationService();
+
+        // 使用 Map 模拟本地的负缓存
+        ConcurrentHashMap<String, Boolean> unknownHosts = new ConcurrentHashMap<>();
+        Cache<String, Boolean> unknownHostCache = Mockito.mock(Cache.class);
+        Mockito.when(unknownHostCache.get(Mockito.anyString())).thenAnswer(invocation -> unknownHosts.get(invocation.<String>getArgument(0)));
+        Mockito.doAnswer(invocation -> unknownHosts.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(unknownHostCache).put(Mockito.anyString(), Mockito.any());
+
+        ReflectionTestUtils.setField(orgService, "orgMapper", orgMapper);
+        ReflectionTestUtils.setField(orgService, "routingTable", routingTable);
+        ReflectionTestUtils.setField(orgService, "unknownHostCache", unknownHostCache);
+        ReflectionTestUtils.setField(orgService, "self", orgService);
+    }
+
+    @AfterEach
+    public void teardown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void negativeCacheWhenTableNotReady() {
+        Mockito.when(routingTable.isReady()).thenReturn(false);
+        Mockito.when(orgMapper.findOrganizationByHost("a.com")).thenReturn(new Organization().setOrgId(2).setHost("a.com"));
+
+        for (int i = 0; i < 5; i++) {
+            request("www.bogus.com");
+            Assertions.assertEquals(1, orgService.getCurrentOrganizationId());
+        }
+
+        // 未知域名只查询一次数据库，之后被负缓存拒绝
+        Mockito.verify(orgMapper, Mockito.times(1)).findOrganizationByHost("bogus.com");
+        Assertions.assertEquals(4, orgService.getUnknownHostRejectedCount());
+
+        request("a.com");
+        Assertions.assertEquals(2, orgService.getCurrentOrganizationId());
+    }
+
+    @Test
+    public void rejectedByRoutingTable() {
+        Mockito.when(routingTable.isReady()).thenReturn(true);
+        request("bogus.com");
+
+        Assertions.assertNull(orgService.getCurrentOrganization());
+        Mockito.verifyNoInteractions(orgMapper);
+    }
+
+    private static void request(String host) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName(host);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
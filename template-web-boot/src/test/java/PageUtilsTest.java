@@ -1,8 +1,14 @@
+import com.xtuer.bean.CursorPage;
 import com.xtuer.bean.Page;
+import com.xtuer.exception.ApplicationException;
 import com.xtuer.util.PageUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class PageUtilsTest {
     @Test
     public void testOffset() {
@@ -30,4 +36,34 @@ public class PageUtilsTest {
         Assertions.assertEquals(80, Page.of(9, 10).getOffset());
         Assertions.assertEquals(90, Page.of(10, 10).getOffset());
     }
+
+    @Test
+    public void testCursor() {
+        // 游标可以还原为 ID，空游标为第一页，无效的游标抛出异常
+        Assertions.assertEquals(1234567890123456789L, PageUtils.afterId(PageUtils.cursor(1234567890123456789L)));
+        Assertions.assertEquals(0, PageUtils.afterId(null));
+        Assertions.assertEquals(0, PageUtils.afterId(""));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PageUtils.afterId("1234"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PageUtils.afterId("%%%"));
+
+        Page page = Page.after(PageUtils.cursor(100), 3);
+        Assertions.assertEquals(100, page.getAfterId());
+        Assertions.assertEquals(3, page.getSize());
+
+        // 每页的数量有上限，无效的游标抛出 code 为 400 的 ApplicationException
+        Assertions.assertEquals(Page.MAX_CURSOR_PAGE_SIZE, Page.after(null, 10_000_000).getSize());
+        Assertions.assertEquals(400, Assertions.assertThrows(ApplicationException.class, () -> Page.after("1234", 3)).getCode());
+    }
+
+    @Test
+    public void testCursorPage() {
+        // 满一页时有下一页的游标，不满一页时没有下一页
+        Page page = Page.after(null, 3);
+        List<Long> ids = Arrays.asList(10L, 20L, 30L);
+
+        CursorPage<Long> full = CursorPage.of(ids, page, id -> id);
+        Assertions.assertEquals(30, PageUtils.afterId(full.getNextCursor()));
+        Assertions.assertNull(CursorPage.of(ids.subList(0, 2), page, id -> id).getNextCursor());
+        Assertions.assertNull(CursorPage.of(Collections.<Long>emptyList(), page, id -> id).getNextCursor());
+    }
 }
@@ -0,0 +1,186 @@
+import com.xtuer.config.AppConfig;
+import com.xtuer.exception.ApplicationException;
+import com.xtuer.security.LoginPasswordEncoder;
+import com.xtuer.security.PasswordBusyException;
+import com.xtuer.security.WebLoginFailureHandler;
+import com.xtuer.service.PasswordService;
+import com.xtuer.util.Utils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试密码服务: 加密和校验、按 cost 统计耗时、修改 cost 后重新加密、线程池满时返回服务器繁忙
+ */
+public class PasswordServiceTest {
+    private AppConfig config;
+    private PasswordService service;
+
+    @BeforeEach
+    public void setup() {
+        config = new AppConfig();
+        config.setPasswordCost(4);
+        config.setPasswordThreads(2);
+        config.setPasswordQueueSize(16);
+        config.setPasswordWaitTimeout(10_000);
+    }
+
+    @AfterEach
+    public void destroy() {
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    @Test
+    public void encodeAndMatches() {
+        service = new PasswordService(config);
+        String encoded = service.encode("Passw0rd");
+
+        Assertions.assertTrue(encoded.startsWith("{bcrypt}$2a$04$"));
+        Assertions.assertTrue(service.matches("Passw0rd", encoded));
+        Assertions.assertFalse(service.matches("wrong", encoded));
+        Assertions.assertFalse(service.matches("Passw0rd", null));
+
+        // 和 Utils.passwordByBCrypt() 加密的密码兼容
+        Assertions.assertTrue(service.matches("Passw0rd", Utils.passwordByBCrypt("Passw0rd")));
+        Assertions.assertTrue(Utils.isPasswordValidByBCrypt("Passw0rd", encoded));
+    }
+
+    @Test
+    public void statsByCost() {
+        service = new PasswordService(config);
+        String cost10 = Utils.passwordByBCrypt("Passw0rd"); // 默认 cost 为 10
+
+        service.matches("Passw0rd", service.encode("Passw0rd"));
+        service.matches("Passw0rd", cost10);
+
+        Assertions.assertEquals(2, service.getStats().get(4).getCount().sum());
+        Assertions.assertEquals(1, service.getStats().get(10).getCount().sum());
+        service.getStats().forEach((cost, stats) -> System.out.printf("cost %d: %.2f ms%n", cost, stats.getAverageMillis()));
+    }
+
+    @Test
+    public void rehashWhenCostChanged() throws InterruptedException {
+        service = new PasswordService(config);
+        String cost10 = Utils.passwordByBCrypt("Passw0rd");
+
+        Assertions.assertTrue(service.needsRehash(cost10));
+        Assertions.assertFalse(service.needsRehash(service.encode("Passw0rd")));
+        Assertions.assertFalse(service.needsRehash("plain-text"));
+
+        // 后台重新加密后保存
+        BlockingQueue<String> saved = new LinkedBlockingQueue<>();
+        service.rehashLater("Passw0rd", saved::add);
+        String rehashed = saved.poll(5, TimeUnit.SECONDS);
+
+        Assertions.assertNotNull(rehashed);
+        Assertions.assertFalse(service.needsRehash(rehashed));
+        Assertions.assertTrue(service.matches("Passw0rd", rehashed));
+    }
+
+    @Test
+    public void concurrentRehash() throws InterruptedException {
+        // 同时重新加密的任务数超过线程数时，不能因为在线程池中等待同一个线程池的任务而卡住
+        service = new PasswordService(config);
+        int requests = config.getPasswordThreads() * 4;
+        BlockingQueue<String> saved = new LinkedBlockingQueue<>();
+
+        for (int i = 0; i < requests; i++) {
+            service.rehashLater("Passw0rd", saved::add);
+        }
+
+        for (int i = 0; i < requests; i++) {
+            String rehashed = saved.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(rehashed, "rehashed: " + i);
+            Assertions.assertFalse(service.needsRehash(rehashed));
+        }
+        Assertions.assertEquals(0, service.getRejectedCount());
+        Assertions.assertEquals(requests, service.getStats().get(4).getCount().sum());
+    }
+
+    @Test
+    public void busyWhenQueueFull() throws InterruptedException {
+        // 1 个线程，队列长度 1，cost 为 12 的计算需要上百毫秒，同时提交的大部分请求立即失败
+        config.setPasswordCost(12);
+        config.setPasswordThreads(1);
+        config.setPasswordQueueSize(1);
+        service = new PasswordService(config);
+
+        int requests = 8;
+        AtomicInteger busy = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(requests);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < requests; i++) {
+            futures.add(callers.submit(() -> {
+                try {
+                    service.encode("Passw0rd");
+                } catch (ApplicationException ex) {
+                    Assertions.assertEquals(PasswordService.BUSY_CODE, ex.getCode());
+                    busy.incrementAndGet();
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            Assertions.assertDoesNotThrow(() -> future.get());
+        }
+        callers.shutdown();
+
+        Assertions.assertTrue(busy.get() >= requests / 2, "busy: " + busy.get());
+        Assertions.assertEquals(busy.get(), service.getRejectedCount());
+    }
+
+    @Test
+    public void busyWhenWaitTimeout() {
+        config.setPasswordCost(14);
+        config.setPasswordWaitTimeout(1);
+        service = new PasswordService(config);
+
+        ApplicationException ex = Assertions.assertThrows(ApplicationException.class, () -> service.encode("Passw0rd"));
+        Assertions.assertEquals(PasswordService.BUSY_CODE, ex.getCode());
+    }
+
+    @Test
+    public void busyOnFormLogin() throws IOException, ServletException {
+        // 表单登录时繁忙的异常是 AuthenticationException，登录失败处理器返回服务器繁忙，而不是 500
+        config.setPasswordCost(14);
+        config.setPasswordWaitTimeout(1);
+        service = new PasswordService(config);
+        LoginPasswordEncoder encoder = new LoginPasswordEncoder(service);
+        String encoded = Utils.passwordByBCrypt("Passw0rd");
+
+        PasswordBusyException ex = Assertions.assertThrows(PasswordBusyException.class, () -> encoder.encode("Passw0rd"));
+        WebLoginFailureHandler handler = new WebLoginFailureHandler();
+
+        MockHttpServletResponse busy = new MockHttpServletResponse();
+        handler.onAuthenticationFailure(new MockHttpServletRequest("POST", "/login"), busy, ex);
+        Assertions.assertEquals("/login?busy", busy.getRedirectedUrl());
+
+        MockHttpServletRequest ajax = new MockHttpServletRequest("POST", "/login");
+        ajax.addHeader("X-Requested-With", "XMLHttpRequest");
+        MockHttpServletResponse busyAjax = new MockHttpServletResponse();
+        handler.onAuthenticationFailure(ajax, busyAjax, ex);
+        Assertions.assertTrue(busyAjax.getContentAsString().contains(String.valueOf(PasswordService.BUSY_CODE)));
+
+        MockHttpServletResponse wrong = new MockHttpServletResponse();
+        handler.onAuthenticationFailure(new MockHttpServletRequest("POST", "/login"), wrong, new BadCredentialsException("Bad credentials"));
+        Assertions.assertEquals("/login?error", wrong.getRedirectedUrl());
+
+        // 不繁忙时和 PasswordService 的结果相同
+        config.setPasswordWaitTimeout(10_000);
+        Assertions.assertTrue(encoder.matches("Passw0rd", encoded));
+    }
+}
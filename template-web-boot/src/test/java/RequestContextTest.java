@@ -0,0 +1,64 @@
+import com.xtuer.util.RequestContext;
+import com.xtuer.util.WebUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试请求范围内的缓存: 一次请求中只计算一次 (包括 null)，不同的请求分别计算
+ */
+public class RequestContextTest {
+    @AfterEach
+    public void teardown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void resolveOncePerRequest() {
+        AtomicInteger calls = new AtomicInteger();
+        long avoided = RequestContext.getAvoidedCount();
+
+        request("www.a.com");
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("value-1", RequestContext.get("test", () -> "value-" + calls.incrementAndGet()));
+            Assertions.assertNull(RequestContext.get("test-null", () -> { calls.incrementAndGet(); return null; }));
+        }
+        Assertions.assertEquals(2, calls.get());
+        Assertions.assertEquals(avoided + 4, RequestContext.getAvoidedCount());
+
+        // 删除后重新计算
+        RequestContext.remove("test");
+        Assertions.assertEquals("value-3", RequestContext.get("test", () -> "value-" + calls.incrementAndGet()));
+
+        // 新的请求重新计算
+        request("b.com");
+        Assertions.assertEquals("value-4", RequestContext.get("test", () -> "value-" + calls.incrementAndGet()));
+    }
+
+    @Test
+    public void host() {
+        request("www.a.com");
+        Assertions.assertEquals("a.com", WebUtils.getHost());
+        Assertions.assertSame(WebUtils.getHost(), WebUtils.getHost());
+    }
+
+    @Test
+    public void outsideRequest() {
+        // 不在请求线程中时每次都计算
+        AtomicInteger calls = new AtomicInteger();
+        RequestContext.get("test", calls::incrementAndGet);
+        RequestContext.get("test", calls::incrementAndGet);
+        Assertions.assertEquals(2, calls.get());
+    }
+
+    private static void request(String host) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServerName(host);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
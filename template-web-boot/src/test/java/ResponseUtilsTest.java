@@ -0,0 +1,171 @@
+import com.xtuer.util.ResponseUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 测试读取文件到 response: 容器支持 sendfile 时只设置 sendfile 属性，不支持时复制文件内容；条件请求返回 304
+ */
+public class ResponseUtilsTest {
+    @TempDir
+    static Path dir;
+    static File file;
+    static byte[] content;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        content = new byte[200 * 1024];
+        new Random(1).nextBytes(content);
+        file = dir.resolve("293591971581788160.mp4").toFile();
+        Files.write(file.toPath(), content);
+    }
+
+    @Test
+    public void sendfileFullFile() throws IOException {
+        MockHttpServletRequest request = sendfileRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", request, response);
+
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals(String.valueOf(content.length), response.getHeader("Content-Length"));
+        Assertions.assertEquals(file.getCanonicalPath(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        Assertions.assertEquals(0L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        Assertions.assertEquals((long) content.length, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        Assertions.assertEquals(0, response.getContentAsByteArray().length); // 由容器发送文件
+    }
+
+    @Test
+    public void sendfileSingleRange() throws IOException {
+        MockHttpServletRequest request = sendfileRequest();
+        request.addHeader("Range", "bytes=1000-99999");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", request, response);
+
+        Assertions.assertEquals(206, response.getStatus());
+        Assertions.assertEquals("99000", response.getHeader("Content-Length"));
+        Assertions.assertEquals(1000L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        Assertions.assertEquals(100000L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    public void copyWithoutSendfile() throws IOException {
+        // 整个文件
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", request, response);
+
+        Assertions.assertArrayEquals(content, response.getContentAsByteArray());
+        Assertions.assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+
+        // 一个 range
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=100000-");
+        response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", request, response);
+
+        Assertions.assertEquals(206, response.getStatus());
+        Assertions.assertArrayEquals(Arrays.copyOfRange(content, 100000, content.length), response.getContentAsByteArray());
+    }
+
+    @Test
+    public void smallRangeIsCopied() throws IOException {
+        // 小于 48KB 的数据直接复制
+        MockHttpServletRequest request = sendfileRequest();
+        request.addHeader("Range", "bytes=10-19");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", request, response);
+
+        Assertions.assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray());
+    }
+
+    private static MockHttpServletRequest sendfileRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        return request;
+    }
+
+    @Test
+    public void conditionalGet() throws IOException {
+        String cacheControl = "public, max-age=31536000, immutable";
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", cacheControl, request, response);
+
+        String etag = response.getHeader("ETag");
+        long lastModified = response.getDateHeader("Last-Modified");
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals(cacheControl, response.getHeader("Cache-Control"));
+        Assertions.assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        Assertions.assertEquals(file.lastModified() / 1000 * 1000, lastModified);
+
+        // ETag 相同时返回 304，不发送文件
+        request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"other\", W/" + etag);
+        response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", cacheControl, request, response);
+        Assertions.assertEquals(304, response.getStatus());
+        Assertions.assertEquals(etag, response.getHeader("ETag"));
+        Assertions.assertEquals(cacheControl, response.getHeader("Cache-Control"));
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+
+        // ETag 不同时返回文件，If-None-Match 优先于 If-Modified-Since
+        request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"other\"");
+        request.addHeader("If-Modified-Since", lastModified);
+        response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", cacheControl, request, response);
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertArrayEquals(content, response.getContentAsByteArray());
+
+        // 修改时间没有变化时返回 304
+        request = new MockHttpServletRequest();
+        request.addHeader("If-Modified-Since", lastModified);
+        response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", cacheControl, request, response);
+        Assertions.assertEquals(304, response.getStatus());
+
+        // 修改时间更早时返回文件
+        request = new MockHttpServletRequest();
+        request.addHeader("If-Modified-Since", lastModified - 1000);
+        response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", cacheControl, request, response);
+        Assertions.assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    public void ifRange() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", new MockHttpServletRequest(), response);
+        String etag = response.getHeader("ETag");
+
+        // ETag 匹配时返回 range
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=100000-");
+        request.addHeader("If-Range", etag);
+        response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", request, response);
+        Assertions.assertEquals(206, response.getStatus());
+
+        // ETag 不匹配时 (文件已经变化) 返回整个文件
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=100000-");
+        request.addHeader("If-Range", "\"stale\"");
+        response = new MockHttpServletResponse();
+        ResponseUtils.readFileToResponse(file.getAbsolutePath(), "video.mp4", request, response);
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertArrayEquals(content, response.getContentAsByteArray());
+    }
+}
@@ -0,0 +1,64 @@
+import com.xtuer.service.IdWorker;
+import com.xtuer.util.SnowflakeIdCodec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+/**
+ * 测试 Snowflake ID 的解析，以及时间范围到 ID 范围的转换
+ */
+public class SnowflakeIdCodecTest {
+    private static final SnowflakeIdCodec codec = SnowflakeIdCodec.ID_WORKER;
+
+    @Test
+    public void decode() {
+        // 解析出的时间截、数据中心 ID、机器 ID 和生成 ID 时的相同
+        long before = System.currentTimeMillis();
+        long id     = new IdWorker(3, 7).nextId();
+        long after  = System.currentTimeMillis();
+
+        Assertions.assertTrue(codec.timestamp(id) >= before && codec.timestamp(id) <= after);
+        Assertions.assertEquals(3, codec.datacenterId(id));
+        Assertions.assertEquals(7, codec.workerId(id));
+        Assertions.assertEquals(0, codec.sequence(id));
+    }
+
+    @Test
+    public void idRange() {
+        // 时间范围 [from, to) 内生成的 ID 都在 [minId, maxId] 中，范围外的都不在
+        IdWorker idWorker = new IdWorker(31, 31);
+        long id = idWorker.nextId();
+        long ts = codec.timestamp(id);
+
+        long[] range = codec.idRange(new Date(ts), new Date(ts + 1));
+        Assertions.assertTrue(range[0] <= id && id <= range[1]);
+        Assertions.assertEquals(ts, codec.timestamp(range[0]));
+        Assertions.assertEquals(ts, codec.timestamp(range[1]));
+        Assertions.assertEquals(31, codec.workerId(range[1]));
+        Assertions.assertEquals(4095, codec.sequence(range[1]));
+
+        // 不包含 to
+        long[] before = codec.idRange(new Date(ts - 10), new Date(ts));
+        Assertions.assertTrue(before[1] < id);
+
+        // 早于开始时间的范围为空，超出最大时间的范围到最大 ID
+        long[] empty = codec.idRange(new Date(0), new Date(1483228800000L));
+        Assertions.assertTrue(empty[0] > empty[1]);
+        Assertions.assertEquals(Long.MAX_VALUE, codec.maxId(new Date(Long.MAX_VALUE / 2)));
+    }
+
+    @Test
+    public void uidGeneratorLayout() {
+        // CachedUidGenerator 的时间截单位是秒，时间范围按秒对齐
+        SnowflakeIdCodec uidCodec = SnowflakeIdCodec.uidGenerator("2019-02-20", 30, 16, 7);
+        Date from = new Date(System.currentTimeMillis());
+        long minId = uidCodec.minId(from);
+        long maxId = uidCodec.maxId(new Date(from.getTime() + 1));
+
+        Assertions.assertEquals(from.getTime() / 1000 * 1000, uidCodec.timestamp(minId));
+        Assertions.assertEquals(uidCodec.timestamp(minId), uidCodec.timestamp(maxId));
+        Assertions.assertEquals(127, uidCodec.sequence(maxId));
+        Assertions.assertEquals(65535, uidCodec.workerId(maxId));
+    }
+}
@@ -0,0 +1,127 @@
+import com.xtuer.config.AppConfig;
+import com.xtuer.security.LocalTokenRevocationStore;
+import com.xtuer.security.TokenRevocationService;
+import com.xtuer.security.TokenRevocationStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试撤销 token: 使用 LocalTokenRevocationStore 代替 Redis，2 个 TokenRevocationService 模拟 2 个节点
+ */
+public class TokenRevocationServiceTest {
+    private TokenRevocationStore store;
+    private AppConfig config;
+
+    @BeforeEach
+    public void setup() {
+        store  = new LocalTokenRevocationStore();
+        config = new AppConfig();
+        config.setAuthTokenDuration(60);
+        config.setTokenRevocationRefreshInterval(60_000);
+    }
+
+    @Test
+    public void revokeAcrossNodes() {
+        TokenRevocationService node1 = new TokenRevocationService(store, config);
+        TokenRevocationService node2 = new TokenRevocationService(store, config);
+        long now = System.currentTimeMillis();
+
+        // 本节点撤销立即生效，其他节点同步后生效
+        node1.revokeToken("token-1", now + 60_000);
+        Assertions.assertTrue(node1.isRevoked("token-1", 1, now));
+        Assertions.assertFalse(node2.isRevoked("token-1", 1, now));
+
+        node2.refresh();
+        Assertions.assertTrue(node2.isRevoked("token-1", 1, now));
+        Assertions.assertFalse(node2.isRevoked("token-2", 1, now));
+    }
+
+    @Test
+    public void revokeWithoutReload() {
+        // 撤销时只写入一条记录，不删除过期记录，也不读取全部撤销记录 (这些只在定时同步时执行)
+        AtomicInteger reads = new AtomicInteger();
+        store = new LocalTokenRevocationStore() {
+            @Override
+            public Map<String, Long> findRevokedTokens() {
+                reads.incrementAndGet();
+                return super.findRevokedTokens();
+            }
+
+            @Override
+            public void purge(long tokenExpiredBefore, long watermarkIssuedBefore) {
+                reads.incrementAndGet();
+                super.purge(tokenExpiredBefore, watermarkIssuedBefore);
+            }
+        };
+        TokenRevocationService service = new TokenRevocationService(store, config);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 2000; i++) {
+            service.revokeToken("token-" + i, now + 60_000);
+        }
+        service.revokeUser(1);
+
+        Assertions.assertEquals(0, reads.get());
+        Assertions.assertTrue(service.isRevoked("token-0", 0, now));
+        Assertions.assertTrue(service.isRevoked("token-1999", 0, now));
+        Assertions.assertTrue(service.isRevoked("token", 1, now - 1));
+        Assertions.assertFalse(service.isRevoked("token-2000", 0, now));
+
+        // 同步后仍然有效
+        service.refresh();
+        Assertions.assertEquals(2, reads.get());
+        Assertions.assertTrue(service.isRevoked("token-1999", 0, now));
+        Assertions.assertTrue(service.isRevoked("token", 1, now - 1));
+    }
+
+    @Test
+    public void userWatermark() throws InterruptedException {
+        TokenRevocationService service = new TokenRevocationService(store, config);
+        long before = System.currentTimeMillis() - 1;
+
+        Thread.sleep(2);
+        service.revokeUser(1);
+        long after = System.currentTimeMillis() + 1;
+
+        Assertions.assertTrue(service.isRevoked("token-1", 1, before));
+        Assertions.assertFalse(service.isRevoked("token-1", 1, after));
+        Assertions.assertFalse(service.isRevoked("token-1", 2, before));
+    }
+
+    @Test
+    public void purgeExpired() {
+        // 过期的 token 的撤销记录、早于 token 有效期的水位线在同步时删除
+        TokenRevocationService service = new TokenRevocationService(store, config);
+        long now = System.currentTimeMillis();
+
+        store.revokeToken("expired", now - 1);
+        store.revokeUser(1, now - 61_000);
+        service.refresh();
+
+        Assertions.assertFalse(service.isRevoked("expired", 0, 0));
+        Assertions.assertFalse(service.isRevoked("token", 1, now - 62_000));
+        Assertions.assertTrue(store.findRevokedTokens().isEmpty());
+        Assertions.assertTrue(store.findUserWatermarks().isEmpty());
+    }
+
+    @Test
+    public void manyRevocations() {
+        // 大量撤销记录时，没有撤销的 token 都不会被误判
+        TokenRevocationService service = new TokenRevocationService(store, config);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 10_000; i++) {
+            store.revokeToken("revoked-" + i, now + 60_000);
+        }
+        service.refresh();
+
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertTrue(service.isRevoked("revoked-" + i, i, now));
+            Assertions.assertFalse(service.isRevoked("valid-" + i, i, now));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import com.xtuer.bean.CursorPage;
+import com.xtuer.bean.Role;
+import com.xtuer.bean.User;
+import com.xtuer.controller.UserController;
+import com.xtuer.exception.ApplicationException;
+import com.xtuer.service.UserExportService;
+import com.xtuer.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * 测试机构用户的列表和导出的权限: 只有系统管理员和这个机构的管理员可以访问
+ */
+public class UserControllerTest {
+    private static final long ORG_ID = 100;
+
+    private UserService userService;
+    private UserExportService exportService;
+    private UserController controller;
+
+    @BeforeEach
+    public void setup() {
+        userService   = Mockito.mock(UserService.class);
+        exportService = Mockito.mock(UserExportService.class);
+        controller    = new UserController();
+        ReflectionTestUtils.setField(controller, "userService", userService);
+        ReflectionTestUtils.setField(controller, "userExportService", exportService);
+    }
+
+    @AfterEach
+    public void destroy() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void exportDenied() throws IOException {
+        // 学生、其他机构的管理员、没有登录都不能导出
+        login(new User(1, "student", null, Role.ROLE_STUDENT), ORG_ID);
+        assertForbidden(() -> controller.exportUsers(ORG_ID, "csv", new MockHttpServletResponse()));
+
+        login(new User(2, "admin", null, Role.ROLE_ADMIN_ORG), ORG_ID + 1);
+        assertForbidden(() -> controller.exportUsers(ORG_ID, "csv", new MockHttpServletResponse()));
+
+        SecurityContextHolder.clearContext();
+        assertForbidden(() -> controller.exportUsers(ORG_ID, "csv", new MockHttpServletResponse()));
+
+        Mockito.verify(exportService, Mockito.never()).exportUsers(Mockito.anyLong(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void exportAllowed() throws IOException {
+        login(new User(2, "admin", null, Role.ROLE_ADMIN_ORG), ORG_ID);
+        controller.exportUsers(ORG_ID, "csv", new MockHttpServletResponse());
+
+        login(new User(3, "root", null, Role.ROLE_ADMIN_SYSTEM), 1);
+        controller.exportUsers(ORG_ID + 1, "jsonl", new MockHttpServletResponse());
+
+        Mockito.verify(exportService).exportUsers(Mockito.eq(ORG_ID), Mockito.eq(UserExportService.Format.CSV), Mockito.any());
+        Mockito.verify(exportService).exportUsers(Mockito.eq(ORG_ID + 1), Mockito.eq(UserExportService.Format.JSONL), Mockito.any());
+    }
+
+    @Test
+    public void listUsers() {
+        // 学生不能查询，机构管理员可以查询自己的机构，无效的游标返回 400 而不是 500
+        login(new User(1, "student", null, Role.ROLE_STUDENT), ORG_ID);
+        assertForbidden(() -> controller.findUsersByOrgId(ORG_ID, null, 20));
+
+        login(new User(2, "admin", null, Role.ROLE_ADMIN_ORG), ORG_ID);
+        Mockito.when(userService.findUsersByOrgId(Mockito.eq(ORG_ID), Mockito.any())).thenReturn(new CursorPage<>(Collections.emptyList(), null));
+        Assertions.assertTrue(controller.findUsersByOrgId(ORG_ID, null, 20).isSuccess());
+
+        ApplicationException ex = Assertions.assertThrows(ApplicationException.class, () -> controller.findUsersByOrgId(ORG_ID, "not-a-cursor", 20));
+        Assertions.assertEquals(400, ex.getCode());
+    }
+
+    /**
+     * 登录用户，token 中没有机构 ID，机构 ID 从 UserService.findUser(userId) 中获取
+     */
+    private void login(User user, long orgId) {
+        User cached = new User(user.getUserId(), user.getUsername(), null).setOrgId(orgId);
+        Mockito.when(userService.findUser(user.getUserId())).thenReturn(cached);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null));
+    }
+
+    private static void assertForbidden(Executable action) {
+        ApplicationException ex = Assertions.assertThrows(ApplicationException.class, action);
+        Assertions.assertEquals(403, ex.getCode());
+    }
+}
@@ -0,0 +1,191 @@
+import com.github.wujun234.uid.impl.CachedUidGenerator;
+import com.xtuer.bean.Role;
+import com.xtuer.bean.User;
+import com.xtuer.bean.UserImportResult;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.UserMapper;
+import com.xtuer.service.PasswordService;
+import com.xtuer.service.UserImportService;
+import com.xtuer.service.UserService;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 使用嵌入式数据库 H2 测试批量导入用户: 创建、更新、进度、失败的行
+ */
+public class UserImportServiceTest {
+    private static final long ORG_ID = 100;
+
+    private UserMapper userMapper;
+    private PasswordService passwordService;
+    private UserImportService importService;
+    private UserService userService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        // 每个测试使用一个新的数据库
+        DataSource dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("user.sql")
+                .build();
+
+        org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setConfiguration(configuration);
+        factoryBean.setTypeAliasesPackage("com.xtuer.bean");
+        factoryBean.setMapperLocations(new ClassPathResource("mapper/UserMapper.xml"));
+        SqlSessionFactory factory = factoryBean.getObject();
+
+        AppConfig config = new AppConfig();
+        config.setPasswordCost(4);
+        config.setPasswordThreads(2);
+        config.setPasswordQueueSize(16);
+        config.setPasswordWaitTimeout(10_000);
+        config.setUserImportBatchSize(100);
+        config.setUserImportHashThreads(4);
+
+        // 模拟 ID 生成器
+        AtomicLong ids = new AtomicLong(1000);
+        CachedUidGenerator uidGenerator = Mockito.mock(CachedUidGenerator.class);
+        Mockito.when(uidGenerator.getUID()).thenAnswer(invocation -> ids.incrementAndGet());
+
+        userMapper      = new SqlSessionTemplate(factory).getMapper(UserMapper.class);
+        passwordService = new PasswordService(config);
+        importService   = new UserImportService(factory, passwordService);
+        ReflectionTestUtils.setField(importService, "config", config);
+        ReflectionTestUtils.setField(importService, "uidGenerator", uidGenerator);
+
+        userService = Mockito.mock(UserService.class);
+        ReflectionTestUtils.setField(importService, "userService", userService);
+    }
+
+    @AfterEach
+    public void destroy() {
+        passwordService.destroy();
+    }
+
+    @Test
+    public void createAndUpdate() {
+        // 250 个用户分 3 批导入，第 10 行没有密码，第 20 行和第 1 行的账号重复
+        List<UserImportResult> progress = new ArrayList<>();
+        List<User> users = users(250);
+        users.get(9).setPassword(null);
+        users.get(19).setUsername("user-0");
+
+        UserImportResult result = importService.importUsers(users.stream(), r -> progress.add(copy(r)));
+
+        Assertions.assertEquals(3, progress.size());
+        Assertions.assertEquals(100, progress.get(0).getProcessed());
+        Assertions.assertEquals(250, result.getProcessed());
+        Assertions.assertEquals(248, result.getCreated());
+        Assertions.assertEquals(2, result.getFailed());
+        Assertions.assertEquals(10, result.getErrors().get(0).getRow());
+        Assertions.assertEquals(20, result.getErrors().get(1).getRow());
+
+        User user = userMapper.findUserByUsernameAndOrgId("user-1", ORG_ID);
+        Assertions.assertTrue(user.hasRole(Role.ROLE_STUDENT));
+        Assertions.assertTrue(user.hasRole(Role.ROLE_TEACHER));
+        Assertions.assertTrue(passwordService.matches("Passw0rd-1", user.getPassword()));
+
+        // 再次导入时更新昵称，不修改密码
+        Stream<User> again = users(3).stream().peek(u -> u.setNickname("new-" + u.getNickname()).setPassword("changed"));
+        result = importService.importUsers(again, null);
+
+        Assertions.assertEquals(0, result.getCreated());
+        Assertions.assertEquals(3, result.getUpdated());
+        user = userMapper.findUserByUsernameAndOrgId("user-1", ORG_ID);
+        Assertions.assertEquals("new-nickname-1", user.getNickname());
+        Assertions.assertTrue(passwordService.matches("Passw0rd-1", user.getPassword()));
+    }
+
+    @Test
+    public void invalidateUpdatedUsers() {
+        // 新用户没有缓存，不需要删除；更新的用户提交后删除缓存
+        importService.importUsers(users(5).stream(), null);
+        Mockito.verify(userService, Mockito.never()).invalidateUserCache(Mockito.anyLong());
+
+        importService.importUsers(users(2).stream().peek(u -> u.setEmail("new@xtuer.com")), null);
+        long userId0 = userMapper.findUserByUsernameAndOrgId("user-0", ORG_ID).getUserId();
+        long userId1 = userMapper.findUserByUsernameAndOrgId("user-1", ORG_ID).getUserId();
+
+        Mockito.verify(userService).invalidateUserCache(userId0);
+        Mockito.verify(userService).invalidateUserCache(userId1);
+        Mockito.verify(userService, Mockito.times(2)).invalidateUserCache(Mockito.anyLong());
+    }
+
+    @Test
+    public void usernameIgnoresCase() {
+        // 账号不区分大小写: USER-0 是已存在的 user-0，更新而不是创建；同一批中的 User-1 和 user-1 重复
+        importService.importUsers(users(1).stream(), null);
+        long userId = userMapper.findUserByUsernameAndOrgId("user-0", ORG_ID).getUserId();
+
+        List<User> users = users(2);
+        users.get(0).setUsername("USER-0").setNickname("upper");
+        users.get(1).setUsername("User-1");
+        users.add(new User("user-1", "Passw0rd", Role.ROLE_STUDENT).setNickname("lower").setOrgId(ORG_ID));
+        UserImportResult result = importService.importUsers(users.stream(), null);
+
+        Assertions.assertEquals(1, result.getCreated());
+        Assertions.assertEquals(1, result.getUpdated());
+        Assertions.assertEquals(1, result.getFailed());
+        Assertions.assertEquals(3, result.getErrors().get(0).getRow());
+
+        User user = userMapper.findUserByUsernameAndOrgId("user-0", ORG_ID);
+        Assertions.assertEquals(userId, user.getUserId());
+        Assertions.assertEquals("upper", user.getNickname());
+        Mockito.verify(userService).invalidateUserCache(userId);
+    }
+
+    @Test
+    public void fallbackToOneByOne() {
+        // 第 5 行没有昵称，数据库拒绝写入，这一批回滚后逐个写入，只有第 5 行失败
+        List<User> users = users(50);
+        users.get(4).setNickname(null);
+
+        UserImportResult result = importService.importUsers(users.stream(), null);
+
+        Assertions.assertEquals(49, result.getCreated());
+        Assertions.assertEquals(1, result.getFailed());
+        Assertions.assertEquals(5, result.getErrors().get(0).getRow());
+        Assertions.assertNull(userMapper.findUserByUsernameAndOrgId("user-4", ORG_ID));
+        Assertions.assertNotNull(userMapper.findUserByUsernameAndOrgId("user-5", ORG_ID));
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+
+        IntStream.range(0, count).forEach(i -> {
+            User user = new User("user-" + i, "Passw0rd-" + i, Role.ROLE_STUDENT, Role.ROLE_TEACHER);
+            users.add(user.setNickname("nickname-" + i).setOrgId(ORG_ID));
+        });
+
+        return users;
+    }
+
+    private static UserImportResult copy(UserImportResult result) {
+        UserImportResult copy = new UserImportResult();
+        copy.addProcessed(result.getProcessed());
+        return copy;
+    }
+}
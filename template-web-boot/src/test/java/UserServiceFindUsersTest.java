@@ -0,0 +1,68 @@
+import com.alicp.jetcache.Cache;
+import com.xtuer.bean.User;
+import com.xtuer.mapper.UserMapper;
+import com.xtuer.service.UserService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+/**
+ * 测试批量查找用户: 一次批量读取缓存，缓存中没有的用户使用一个 IN 查询加载，并批量写入缓存
+ */
+public class UserServiceFindUsersTest {
+    private UserMapper userMapper;
+    private Cache<String, User> userCache;
+    private UserService userService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        userMapper  = Mockito.mock(UserMapper.class);
+        userCache   = Mockito.mock(Cache.class);
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "userCache", userCache);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void cacheHitsAndMisses() {
+        // 用户 1 在缓存中，用户 2 在数据库中，用户 3 不存在
+        Map<String, User> cached = new HashMap<>();
+        cached.put("user.1", new User(1, "alice", null));
+        Mockito.when(userCache.getAll(Mockito.anySet())).thenReturn(cached);
+        Mockito.when(userMapper.findUsersByIds(Mockito.anyCollection())).thenReturn(Collections.singletonList(new User(2, "bob", null)));
+
+        Map<Long, User> users = userService.findUsers(Arrays.asList(3L, 2L, 1L, 2L));
+
+        Assertions.assertEquals(Arrays.asList(2L, 1L), new ArrayList<>(users.keySet()));
+        Assertions.assertEquals("bob", users.get(2L).getUsername());
+        Assertions.assertEquals("alice", users.get(1L).getUsername());
+
+        // 只查询缓存中没有的用户，一个 IN 查询
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(userMapper, Mockito.times(1)).findUsersByIds(ids.capture());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(2L, 3L)), new HashSet<>(ids.getValue()));
+
+        // 从数据库加载的用户批量写入缓存
+        ArgumentCaptor<Map<String, User>> loaded = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(userCache).putAll(loaded.capture());
+        Assertions.assertEquals(Collections.singleton("user.2"), loaded.getValue().keySet());
+    }
+
+    @Test
+    public void allCached() {
+        Map<String, User> cached = new HashMap<>();
+        cached.put("user.1", new User(1, "alice", null));
+        Mockito.when(userCache.getAll(Mockito.anySet())).thenReturn(cached);
+
+        Assertions.assertEquals(1, userService.findUsers(Collections.singletonList(1L)).size());
+        Assertions.assertTrue(userService.findUsers(Collections.emptyList()).isEmpty());
+        Mockito.verifyNoInteractions(userMapper);
+    }
+}
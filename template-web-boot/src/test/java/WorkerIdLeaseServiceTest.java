@@ -0,0 +1,168 @@
+import com.github.wujun234.uid.impl.CachedUidGenerator;
+import com.xtuer.bean.WorkerLease;
+import com.xtuer.config.AppConfig;
+import com.xtuer.mapper.WorkerLeaseMapper;
+import com.xtuer.service.BaseService;
+import com.xtuer.service.LeasedWorkerIdAssigner;
+import com.xtuer.service.WorkerIdLeaseService;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 使用嵌入式数据库 H2 测试机器 ID 的申请、续约、回收和释放
+ */
+public class WorkerIdLeaseServiceTest {
+    private static final long DURATION = 200; // 租约的有效期，单位毫秒
+
+    private WorkerLeaseMapper leaseMapper;
+    private AppConfig config;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        // 每个测试使用一个新的数据库
+        DataSource dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("worker_lease.sql")
+                .build();
+
+        org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setConfiguration(configuration);
+        factoryBean.setTypeAliasesPackage("com.xtuer.bean");
+        factoryBean.setMapperLocations(new ClassPathResource("mapper/WorkerLeaseMapper.xml"));
+        SqlSessionFactory factory = factoryBean.getObject();
+
+        leaseMapper = new SqlSessionTemplate(factory).getMapper(WorkerLeaseMapper.class);
+        config = new AppConfig();
+        config.setWorkerLeaseEnabled(true);
+        config.setWorkerLeaseDuration(DURATION);
+    }
+
+    @Test
+    public void distinctWorkerIds() {
+        // 存活的节点申请到不同的机器 ID
+        WorkerIdLeaseService node1 = new WorkerIdLeaseService(leaseMapper, config);
+        WorkerIdLeaseService node2 = new WorkerIdLeaseService(leaseMapper, config);
+
+        Assertions.assertEquals(0, node1.claim());
+        Assertions.assertEquals(1, node2.claim());
+        Assertions.assertTrue(node1.renew());
+        Assertions.assertTrue(node2.renew());
+        Assertions.assertTrue(node1.isLeaseValid());
+        Assertions.assertEquals(2, leaseMapper.findFreeWorkerId());
+
+        // CachedUidGenerator 使用申请到的机器 ID
+        Assertions.assertEquals(1, new LeasedWorkerIdAssigner(node2).assignWorkerId());
+    }
+
+    @Test
+    public void reuseFreeWorkerIds() {
+        // 表中的机器 ID 不连续时 (例如删除过行) 使用最小的空闲机器 ID，不会和已有的租约重复
+        long future = System.currentTimeMillis() + DURATION * 10;
+        leaseMapper.insertLease(new WorkerLease().setWorkerId(1).setOwner("other").setExpiredAt(future));
+        leaseMapper.insertLease(new WorkerLease().setWorkerId(3).setOwner("other").setExpiredAt(future));
+
+        Assertions.assertEquals(0, new WorkerIdLeaseService(leaseMapper, config).claim());
+        Assertions.assertEquals(2, new WorkerIdLeaseService(leaseMapper, config).claim());
+        Assertions.assertEquals(4, new WorkerIdLeaseService(leaseMapper, config).claim());
+    }
+
+    @Test
+    public void disabled() {
+        // 未启用租约时不访问表 worker_lease，也不需要 SERVER_ID，总是可以生成 ID
+        config.setWorkerLeaseEnabled(false);
+        WorkerIdLeaseService node = new WorkerIdLeaseService(Mockito.mock(WorkerLeaseMapper.class), config);
+        node.start();
+
+        Assertions.assertTrue(node.isLeaseValid());
+        Assertions.assertTrue(idService(node).nextId() > 0);
+    }
+
+    @Test
+    public void reclaimExpiredLease() {
+        WorkerIdLeaseService node1 = new WorkerIdLeaseService(leaseMapper, config);
+        WorkerIdLeaseService node2 = new WorkerIdLeaseService(leaseMapper, config);
+        int workerId = node1.claim();
+
+        // 过期不到一个租期的租约不能被回收
+        leaseMapper.renewLease(workerId, node1.getFence(), System.currentTimeMillis() - DURATION / 2);
+        Assertions.assertNotEquals(workerId, node2.claim());
+
+        // node1 心跳中断，租约过期超过一个租期后被 node3 回收，fence 加 1
+        WorkerIdLeaseService node3 = new WorkerIdLeaseService(leaseMapper, config);
+        leaseMapper.renewLease(workerId, node1.getFence(), System.currentTimeMillis() - DURATION * 2);
+        Assertions.assertEquals(workerId, node3.claim());
+        Assertions.assertEquals(node1.getFence() + 1, node3.getFence());
+        Assertions.assertEquals(node3.getFence(), leaseMapper.findLease(workerId).getFence());
+
+        // node1 恢复后续约失败，不能再生成 ID
+        BaseService idService = idService(node1);
+        Assertions.assertFalse(node1.renew());
+        Assertions.assertFalse(node1.isLeaseValid());
+        Assertions.assertThrows(IllegalStateException.class, idService::nextId);
+        Assertions.assertThrows(IllegalStateException.class, () -> idService.nextIds(10));
+
+        // node3 继续正常生成 ID
+        Assertions.assertTrue(node3.renew());
+        Assertions.assertTrue(idService(node3).nextId() > 0);
+    }
+
+    @Test
+    public void releaseLease() throws InterruptedException {
+        WorkerIdLeaseService node1 = new WorkerIdLeaseService(leaseMapper, config);
+        int workerId = node1.claim();
+        node1.release();
+        Assertions.assertFalse(node1.isLeaseValid());
+
+        // 释放后需要过一个租期才能被回收
+        WorkerIdLeaseService node2 = new WorkerIdLeaseService(leaseMapper, config);
+        Assertions.assertNotEquals(workerId, node2.claim());
+
+        Thread.sleep(DURATION + 50);
+        WorkerIdLeaseService node3 = new WorkerIdLeaseService(leaseMapper, config);
+        Assertions.assertEquals(workerId, node3.claim());
+    }
+
+    @Test
+    public void leaseExpiresWithoutHeartbeat() throws InterruptedException {
+        // 没有心跳时租约过期，拒绝生成 ID
+        WorkerIdLeaseService node = new WorkerIdLeaseService(leaseMapper, config);
+        node.claim();
+        BaseService idService = idService(node);
+        Assertions.assertTrue(idService.nextId() > 0);
+
+        Thread.sleep(DURATION + 50);
+        Assertions.assertFalse(node.isLeaseValid());
+        Assertions.assertThrows(IllegalStateException.class, idService::nextId);
+    }
+
+    /**
+     * 使用模拟的 CachedUidGenerator 生成 ID 的 BaseService，租约无效时拒绝生成 ID
+     */
+    private static BaseService idService(WorkerIdLeaseService leaseService) {
+        AtomicLong ids = new AtomicLong(1000);
+        CachedUidGenerator uidGenerator = Mockito.mock(CachedUidGenerator.class);
+        Mockito.when(uidGenerator.getUID()).thenAnswer(invocation -> ids.incrementAndGet());
+
+        BaseService service = new BaseService();
+        ReflectionTestUtils.setField(service, "uidGenerator", uidGenerator);
+        ReflectionTestUtils.setField(service, "leaseService", leaseService);
+        return service;
+    }
+}
@@ -0,0 +1,26 @@
+-- 测试使用的 H2 表结构，和 sql/account.sql 中的 user 和 user_role 相同 (使用 MySQL 兼容模式)
+SET MODE MySQL;
+SET IGNORECASE TRUE; -- 和 MySQL 默认的排序规则一样，比较字符串时不区分大小写
+
+CREATE TABLE user (
+    user_id  bigint       NOT NULL,
+    username varchar(128) NOT NULL,
+    nickname varchar(256) NOT NULL,
+    password varchar(128) NOT NULL,
+    email    varchar(256),
+    mobile   varchar(64),
+    phone    varchar(64),
+    avatar   varchar(512),
+    gender   tinyint DEFAULT 0,
+    org_id   bigint  NOT NULL,
+    enabled  tinyint DEFAULT 1,
+    PRIMARY KEY (user_id),
+    UNIQUE KEY index_org_user (org_id, username)
+);
+
+CREATE TABLE user_role (
+    id      int AUTO_INCREMENT PRIMARY KEY,
+    user_id bigint       NOT NULL,
+    role    varchar(128) NOT NULL,
+    UNIQUE KEY index_user_role (user_id, role)
+);
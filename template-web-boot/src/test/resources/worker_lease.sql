@@ -0,0 +1,10 @@
+-- 测试使用的 H2 表结构，和 sql/worker_lease.sql 相同
+CREATE TABLE worker_lease (
+    worker_id  int          NOT NULL,
+    owner      varchar(128) NOT NULL,
+    fence      bigint       NOT NULL,
+    expired_at bigint       NOT NULL,
+    created_at timestamp    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at timestamp    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (worker_id)
+);
@@ -6,8 +6,8 @@ import com.alicp.jetcache.anno.config.EnableCreateCacheAnnotation;
 import com.alicp.jetcache.anno.config.EnableMethodCache;
 import com.alicp.jetcache.anno.support.GlobalCacheConfig;
 import com.alicp.jetcache.anno.support.SpringConfigProvider;
+import com.alicp.jetcache.embedded.CaffeineCacheBuilder;
 import com.alicp.jetcache.embedded.EmbeddedCacheBuilder;
-import com.alicp.jetcache.embedded.LinkedHashMapCacheBuilder;
 import com.alicp.jetcache.redis.RedisCacheBuilder;
 import com.alicp.jetcache.support.FastjsonKeyConvertor;
 import com.alicp.jetcache.support.KryoValueDecoder;
@@ -61,8 +61,9 @@ public class JetCacheConfig {
 
     @Bean
     public GlobalCacheConfig config(SpringConfigProvider configProvider, Pool<Jedis> pool) {
+        // 本地缓存使用 Caffeine: 并发读写不需要全局锁，使用 W-TinyLFU 淘汰 (按访问频率准入，只访问一次的 key 不会挤掉热点 key)
         Map<String, CacheBuilder> localBuilders = new HashMap<>();
-        EmbeddedCacheBuilder localBuilder = LinkedHashMapCacheBuilder.createLinkedHashMapCacheBuilder()
+        EmbeddedCacheBuilder localBuilder = CaffeineCacheBuilder.createCaffeineCacheBuilder()
                 .keyConvertor(FastjsonKeyConvertor.INSTANCE)
                 .expireAfterWrite(1000, TimeUnit.SECONDS) // 全局 expire，@Cached 能够指定自己的 expire
                 .limit(3000);
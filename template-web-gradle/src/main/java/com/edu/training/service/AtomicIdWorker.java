@@ -0,0 +1,162 @@
+package com.edu.training.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁的 Snowflake ID 生成器，ID 的结构和 IdWorker 完全相同: 1 位符号位 + 41 位时间截 + 5 位数据中心 ID + 5 位机器 ID + 12 位序列。
+ *
+ * IdWorker.nextId() 使用 synchronized 保护 lastTimestamp 和 sequence，高并发时所有线程都在同一个锁上排队。
+ * AtomicIdWorker 把这两个状态合并到一个 AtomicLong 中，使用 CAS 进行更新:
+ *     state = (lastTimestamp - START_TIMESTAMP) << 12 | sequence
+ * 每次生成 ID 时读取 state，计算出新的时间截和序列，CAS 成功则使用新的 state 拼出 ID，失败说明被其他线程抢先了，重新计算即可。
+ *
+ * 时钟回退时的行为和 IdWorker 相同: 抛出 RuntimeException，拒绝生成 ID。
+ */
+@Service
+public class AtomicIdWorker extends IdWorker {
+    /**
+     * 上次生成 ID 的时间截 (相对 START_TIMESTAMP) 和毫秒内序列，格式为: 时间截 << 12 | 序列
+     */
+    private final AtomicLong state = new AtomicLong(0);
+
+    /**
+     * 读取服务器 ID 的环境变量 SERVER_ID 作为 ID 生成器的 ID，范围是 [0, 1023]
+     */
+    public AtomicIdWorker() {
+        super();
+    }
+
+    /**
+     * 使用工作机器的序号创建 ID 生成器，范围是 [0, 1023]
+     *
+     * @param workerId 工作机器 ID
+     */
+    public AtomicIdWorker(long workerId) {
+        super(workerId);
+    }
+
+    /**
+     * 使用工作机器 ID 和数据中心 ID 创建 ID 生成器
+     *
+     * @param datacenterId 数据中心 ID (0~31)
+     * @param workerId     工作机器 ID (0~31)
+     */
+    public AtomicIdWorker(long datacenterId, long workerId) {
+        super(datacenterId, workerId);
+    }
+
+    /**
+     * 获得下一个 ID(该方法是线程安全的，不加锁)，同一机器同一时间可产生 4096 个 ID，70 年内不生成重复的 ID
+     *
+     * @return long 类型的 ID
+     */
+    @Override
+    public long nextId() {
+        // 1. 读取当前的 state，解析出上次生成 ID 的时间截 lastTimestamp 和序列 sequence
+        // 2. 如果当前时间小于 lastTimestamp，说明时钟回退了，抛出异常
+        // 3. 如果是同一毫秒则序列加 1，序列溢出时阻塞到下一个毫秒，序列从 0 开始；不同毫秒则序列重置为 0
+        // 4. 使用 CAS 更新 state，成功则拼接 ID 返回，失败则重新开始
+
+        while (true) {
+            // [1] 读取当前的 state，解析出上次生成 ID 的时间截 lastTimestamp 和序列 sequence
+            long current       = state.get();
+            long lastTimestamp = (current >>> SEQUENCE_BITS) + START_TIMESTAMP;
+            long sequence      = current & SEQUENCE_MASK;
+            long timestamp     = timeGen();
+
+            // [2] 如果当前时间小于上一次 ID 生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
+            if (timestamp < lastTimestamp) {
+                throw new RuntimeException(String.format("Clock moved backwards. Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
+            }
+
+            // [3] 如果是同一时间生成的，则进行毫秒内序列
+            if (timestamp == lastTimestamp) {
+                sequence = (sequence + 1) & SEQUENCE_MASK;
+
+                // 毫秒内序列溢出，阻塞到下一个毫秒，获得新的时间戳
+                if (sequence == 0) {
+                    timestamp = tilNextMillis(lastTimestamp);
+                }
+            } else {
+                sequence = 0L; // 时间戳改变，毫秒内序列重置
+            }
+
+            // [4] 使用 CAS 更新 state，成功则拼接 ID 返回，失败则重新开始
+            long next = ((timestamp - START_TIMESTAMP) << SEQUENCE_BITS) | sequence;
+
+            if (state.compareAndSet(current, next)) {
+                return ((timestamp - START_TIMESTAMP) << TIMESTAMP_LEFT_SHIFT)
+                        | (datacenterId << DATACENTER_ID_SHIFT)
+                        | (workerId << WORKER_ID_SHIFT)
+                        | sequence;
+            }
+        }
+    }
+
+    /**
+     * 一次获得 count 个 ID(该方法是线程安全的，不加锁)。
+     * 每次 CAS 预留当前毫秒内剩余的一段连续序列，而不是每个 ID 都 CAS 一次，所以同一毫秒内得到的 ID 是连续的。
+     *
+     * @param count ID 的数量
+     * @return 返回 ID 的数组，按生成顺序递增
+     */
+    @Override
+    public long[] nextIds(int count) {
+        // 1. 读取当前的 state，解析出上次生成 ID 的时间截 lastTimestamp 和序列 sequence
+        // 2. 如果当前时间小于 lastTimestamp，说明时钟回退了，抛出异常
+        // 3. 计算本次预留的第一个序列 first: 同一毫秒则从 sequence + 1 开始，溢出时阻塞到下一个毫秒从 0 开始；不同毫秒从 0 开始
+        // 4. 本次预留 [first, last] 这一段序列，最多到当前毫秒的最大序列 4095
+        // 5. 使用 CAS 更新 state，成功则拼接这一段 ID，失败则重新开始，直到得到 count 个 ID
+
+        if (count < 0) {
+            throw new IllegalArgumentException(String.format("ID count can't be less than 0: %d", count));
+        }
+
+        long[] ids = new long[count];
+        int filled = 0;
+
+        while (filled < count) {
+            // [1] 读取当前的 state，解析出上次生成 ID 的时间截 lastTimestamp 和序列 sequence
+            long current       = state.get();
+            long lastTimestamp = (current >>> SEQUENCE_BITS) + START_TIMESTAMP;
+            long sequence      = current & SEQUENCE_MASK;
+            long timestamp     = timeGen();
+            long first         = 0L;
+
+            // [2] 如果当前时间小于上一次 ID 生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
+            if (timestamp < lastTimestamp) {
+                throw new RuntimeException(String.format("Clock moved backwards. Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
+            }
+
+            // [3] 计算本次预留的第一个序列 first
+            if (timestamp == lastTimestamp) {
+                first = sequence + 1;
+
+                // 毫秒内序列溢出，阻塞到下一个毫秒，获得新的时间戳
+                if (first > SEQUENCE_MASK) {
+                    timestamp = tilNextMillis(lastTimestamp);
+                    first = 0L;
+                }
+            }
+
+            // [4] 本次预留 [first, last] 这一段序列，最多到当前毫秒的最大序列 4095
+            long last = Math.min(first + (count - filled) - 1, SEQUENCE_MASK);
+            long next = ((timestamp - START_TIMESTAMP) << SEQUENCE_BITS) | last;
+
+            // [5] 使用 CAS 更新 state，成功则拼接这一段 ID，失败则重新开始
+            if (state.compareAndSet(current, next)) {
+                long prefix = ((timestamp - START_TIMESTAMP) << TIMESTAMP_LEFT_SHIFT)
+                        | (datacenterId << DATACENTER_ID_SHIFT)
+                        | (workerId << WORKER_ID_SHIFT);
+
+                for (long seq = first; seq <= last; seq++) {
+                    ids[filled++] = prefix | seq;
+                }
+            }
+        }
+
+        return ids;
+    }
+}
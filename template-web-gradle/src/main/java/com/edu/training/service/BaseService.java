@@ -29,4 +29,14 @@ public class BaseService {
     public long nextId() {
         return idWorker.nextId();
     }
+
+    /**
+     * 一次生成 count 个唯一的 64 位 long 的 ID，批量导入数据时使用
+     *
+     * @param count ID 的数量
+     * @return 返回 ID 的数组
+     */
+    public long[] nextIds(int count) {
+        return idWorker.nextIds(count);
+    }
 }
@@ -19,10 +19,10 @@ import org.springframework.stereotype.Service;
  * 最多支持 1024 台机器，每台机器每毫秒能够生成最多 4096 个 ID，整个集群理论上每秒可以生成 1024 * 1000 * 4096 = 42 亿个 ID。
  */
 @Slf4j
-@Service
+// @Service (使用无锁的 AtomicIdWorker 作为 ID 生成器)
 public class IdWorker {
     /** 开始时间截(2017-01-01)，单位毫秒 */
-    private static final long START_TIMESTAMP = 1483228800000L;
+    protected static final long START_TIMESTAMP = 1483228800000L;
 
     /** 机器 ID 所占的位数 */
     private static final long WORKER_ID_BITS = 5L;
@@ -37,25 +37,25 @@ public class IdWorker {
     private static final long MAX_DATACENTER_ID = ~(-1L << DATACENTER_ID_BITS);
 
     /** 序列在 ID 中占的位数 */
-    private static final long SEQUENCE_BITS = 12L;
+    protected static final long SEQUENCE_BITS = 12L;
 
     /** 机器 ID 向左移 12 位 */
-    private static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
+    protected static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
 
     /** 数据中心 ID 向左移 17 位(12+5) */
-    private static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+    protected static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
 
     /** 时间截向左移 22 位(5+5+12) */
-    private static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS + DATACENTER_ID_BITS;
+    protected static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS + DATACENTER_ID_BITS;
 
     /** 生成序列的掩码，这里为 4095(0B111111111111=0xFFF=4095) */
-    private static final long SEQUENCE_MASK = ~(-1L << SEQUENCE_BITS);
+    protected static final long SEQUENCE_MASK = ~(-1L << SEQUENCE_BITS);
 
     /** 工作机器 ID(0~31) */
-    private long workerId;
+    protected long workerId;
 
     /** 数据中心 ID(0~31) */
-    private long datacenterId;
+    protected long datacenterId;
 
     /** 毫秒内序列(0~4095) */
     private long sequence = 0L;
@@ -159,6 +159,26 @@ public class IdWorker {
                 | sequence;
     }
 
+    /**
+     * 一次获得 count 个 ID(该方法是线程安全的)，批量处理数据时使用，只需要获取一次锁
+     *
+     * @param count ID 的数量
+     * @return 返回 ID 的数组，按生成顺序递增
+     */
+    public synchronized long[] nextIds(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException(String.format("ID count can't be less than 0: %d", count));
+        }
+
+        long[] ids = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            ids[i] = nextId();
+        }
+
+        return ids;
+    }
+
     /**
      * 阻塞到下一个毫秒，直到获得新的时间戳
      *